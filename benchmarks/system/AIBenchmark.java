@@ -0,0 +1,64 @@
+package system;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import players.AI;
+
+/**
+ * Measures an AI update, which remembers the view and searches for its next
+ * move, on the view of a living player in the middle of a game.
+ *
+ * @author Axel Li
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(3)
+public class AIBenchmark {
+	@Param({ "18", "25", "40" })
+	public int size;
+
+	@Param({ "2", "8" })
+	public int kingdoms;
+
+	private int player;
+	private Viewed[][] view;
+	private int[][] armyState;
+	private AI ai;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		GameBoard g = Scenarios.midGame(size, kingdoms, 150);
+		player = Scenarios.living(g);
+		view = Scenarios.view(g, player);
+		armyState = Scenarios.armyState(g);
+	}
+
+	@Setup(Level.Iteration)
+	public void player() {
+		ai = new AI(size, size, kingdoms, player);
+		ai.setVerbose(false);
+		ai.setRandom(new SplittableRandom(Scenarios.SEED));
+	}
+
+	@Benchmark
+	public void update() {
+		ai.update(view, armyState);
+	}
+}
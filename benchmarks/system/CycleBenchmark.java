@@ -0,0 +1,56 @@
+package system;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures a whole cycle of a game between AI players from the middle of the
+ * game. The game is restored to the starting position whenever it ends or has
+ * run for a window of cycles, so every iteration measures the same stretch of
+ * the game instead of a later and later one.
+ *
+ * @author Axel Li
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(3)
+public class CycleBenchmark {
+	@Param({ "18", "25", "40" })
+	public int size;
+
+	@Param({ "2", "8" })
+	public int kingdoms;
+
+	private GameBoard game;
+	private Snapshot start;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		game = Scenarios.midGame(size, kingdoms, 100);
+		start = game.snapshot();
+	}
+
+	@Benchmark
+	public int cycle() {
+		if (game.gameEnd() != 0 || game.getCount() >= start.getCount() + Scenarios.WINDOW) {
+			game.restore(start);
+		}
+		game.cycle();
+		return game.getCount();
+	}
+}
@@ -0,0 +1,40 @@
+package system;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures generating a map, including the distance checks between kings. The
+ * generator is created from the same seed every time, so every invocation
+ * generates the same map.
+ *
+ * @author Axel Li
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(3)
+public class GeneratorBenchmark {
+	@Param({ "18", "25", "40" })
+	public int size;
+
+	@Param({ "2", "8" })
+	public int kingdoms;
+
+	@Benchmark
+	public boolean create() {
+		return Scenarios.generator(size, kingdoms).create(100, false);
+	}
+}
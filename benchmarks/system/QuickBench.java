@@ -0,0 +1,84 @@
+package system;
+
+import java.util.SplittableRandom;
+
+import players.AI;
+
+/**
+ * A plain timing loop over the same scenarios as the JMH benchmarks, for
+ * machines without JMH. Each case is warmed up and then run for a fixed time in
+ * one JVM, so the numbers are rougher than JMH results and only comparable
+ * with runs on the same machine.
+ *
+ * @author Axel Li
+ */
+public class QuickBench {
+	private static final int[] SIZES = { 18, 25, 40 };
+	private static final int[] KINGDOMS = { 2, 8 };
+	private static final long WARMUP = 1_000_000_000L;
+	private static final long MEASURE = 2_000_000_000L;
+	private static long sink;
+
+	/**
+	 * Runs every case and prints the mean time per operation.
+	 *
+	 * @param args
+	 *            - not used
+	 */
+	public static void main(String[] args) {
+		System.setProperty("java.awt.headless", "true");
+		System.out.printf("%-36s %6s %9s %14s%n", "benchmark", "size", "kingdoms", "us/op");
+		for (int size : SIZES) {
+			for (int kingdoms : KINGDOMS) {
+				GameBoard game = Scenarios.midGame(size, kingdoms, 100);
+				Snapshot start = game.snapshot();
+				print("CycleBenchmark.cycle", size, kingdoms, time(() -> {
+					if (game.gameEnd() != 0 || game.getCount() >= start.getCount() + Scenarios.WINDOW) {
+						game.restore(start);
+					}
+					game.cycle();
+				}));
+				GameBoard views = Scenarios.midGame(size, kingdoms, 100);
+				print("ViewBenchmark.playerViews", size, kingdoms, time(() -> sink += Scenarios.playerViews(views)));
+				print("ViewBenchmark.updateArmyState", size, kingdoms, time(views::updateArmyState));
+				print("GeneratorBenchmark.create", size, kingdoms,
+						time(() -> sink += Scenarios.generator(size, kingdoms).create(100, false) ? 1 : 0));
+				GameBoard mid = Scenarios.midGame(size, kingdoms, 150);
+				int player = Scenarios.living(mid);
+				Viewed[][] view = Scenarios.view(mid, player);
+				int[][] armyState = Scenarios.armyState(mid);
+				AI ai = new AI(size, size, kingdoms, player);
+				ai.setVerbose(false);
+				ai.setRandom(new SplittableRandom(Scenarios.SEED));
+				print("AIBenchmark.update", size, kingdoms, time(() -> ai.update(view, armyState)));
+			}
+		}
+	}
+
+	/**
+	 * Warms up an operation and measures its mean time.
+	 *
+	 * @param op
+	 *            - the operation
+	 * @return the mean time in microseconds
+	 */
+	private static double time(Runnable op) {
+		long end = System.nanoTime() + WARMUP;
+		while (System.nanoTime() < end) {
+			op.run();
+		}
+		long ops = 0;
+		long start = System.nanoTime();
+		end = start + MEASURE;
+		long now;
+		while ((now = System.nanoTime()) < end) {
+			op.run();
+			ops++;
+		}
+		return (now - start) / 1e3 / ops;
+	}
+
+	private static void print(String name, int size, int kingdoms, double micros) {
+		System.out.printf("%-36s %6d %9d %14.3f%n", name, size, kingdoms, micros);
+	}
+}
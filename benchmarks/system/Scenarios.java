@@ -0,0 +1,152 @@
+package system;
+
+import players.AI;
+
+/**
+ * The fixed-seed games and generators that the benchmarks run on, shared by
+ * the JMH benchmarks and <code>QuickBench</code>.
+ *
+ * @author Axel Li
+ */
+final class Scenarios {
+	static final long SEED = 0x5EED_2024L;
+	static final double MOUNTAIN = 0.12;
+	static final double CITY = 0.04;
+	static final int WINDOW = 100;
+
+	private Scenarios() {
+	}
+
+	/**
+	 * Returns the minimum maze distance between kings used by
+	 * <code>BatchRunner</code> for a board.
+	 *
+	 * @param size
+	 *            - the i and j size of the board
+	 * @param kingdoms
+	 *            - the number of kingdoms
+	 * @return the minimum maze distance
+	 */
+	static int maze(int size, int kingdoms) {
+		return (int) Math.sqrt(8.0 / 5 * size * size / kingdoms);
+	}
+
+	/**
+	 * Creates a seeded game between quiet AI players.
+	 *
+	 * @param size
+	 *            - the i and j size of the board
+	 * @param kingdoms
+	 *            - the number of kingdoms
+	 * @return a new game board
+	 */
+	static GameBoard game(int size, int kingdoms) {
+		Player[] players = new Player[kingdoms];
+		for (int x = 0; x < kingdoms; x++) {
+			AI ai = new AI(size, size, kingdoms, x + 1);
+			ai.setVerbose(false);
+			players[x] = ai;
+		}
+		int maze = maze(size, kingdoms);
+		return new GameBoard(players, new Spectator[0], size, size, MOUNTAIN, CITY, maze - 10 + kingdoms, maze, SEED);
+	}
+
+	/**
+	 * Creates a seeded game and plays it until the middle of the game, or until
+	 * one player is left alive.
+	 *
+	 * @param size
+	 *            - the i and j size of the board
+	 * @param kingdoms
+	 *            - the number of kingdoms
+	 * @param ticks
+	 *            - the number of cycles to play
+	 * @return the game board
+	 */
+	static GameBoard midGame(int size, int kingdoms, int ticks) {
+		GameBoard g = game(size, kingdoms);
+		while (g.getCount() < ticks && g.gameEnd() == 0) {
+			g.cycle();
+		}
+		return g;
+	}
+
+	/**
+	 * Creates a seeded generator with the settings of a game.
+	 *
+	 * @param size
+	 *            - the i and j size of the board
+	 * @param kingdoms
+	 *            - the number of kingdoms
+	 * @return a new generator
+	 */
+	static GameGenerator generator(int size, int kingdoms) {
+		int maze = maze(size, kingdoms);
+		return new GameGenerator(size, size, MOUNTAIN, CITY, kingdoms, maze, maze - 10 + kingdoms, SEED);
+	}
+
+	/**
+	 * Finds the first player that is still alive.
+	 *
+	 * @param g
+	 *            - the game board
+	 * @return the player number
+	 */
+	static int living(GameBoard g) {
+		boolean[] dead = g.getStatus();
+		int p = 0;
+		while (dead[p]) {
+			p++;
+		}
+		return p + 1;
+	}
+
+	/**
+	 * Copies the view of a player as it would be given to a player that does not
+	 * take deltas.
+	 *
+	 * @param g
+	 *            - the game board
+	 * @param p
+	 *            - the player number
+	 * @return a new matrix of <code>Viewed</code> objects
+	 */
+	static Viewed[][] view(GameBoard g, int p) {
+		return g.legacyView(p);
+	}
+
+	/**
+	 * Rebuilds every view of a game from scratch and builds the matrix of each
+	 * player and of everything, as for a reset or a keyframe of viewers that do
+	 * not take deltas.
+	 *
+	 * @param g
+	 *            - the game board
+	 * @return the number of cells built, so that the work is not eliminated
+	 */
+	static int playerViews(GameBoard g) {
+		g.rebuildViews();
+		int cells = 0;
+		for (int p = 0; p <= g.getStatus().length; p++) {
+			Viewed[][] view = g.legacyView(p);
+			cells += view.length * view[0].length;
+		}
+		return cells;
+	}
+
+	/**
+	 * Copies the army state of a game.
+	 *
+	 * @param g
+	 *            - the game board
+	 * @return a new matrix with the land and troops of each player
+	 */
+	static int[][] armyState(GameBoard g) {
+		int[][] source = g.getArmyState();
+		int[][] result = new int[source.length][];
+		for (int k = 0; k < source.length; k++) {
+			result[k] = source[k].clone();
+		}
+		return result;
+	}
+}
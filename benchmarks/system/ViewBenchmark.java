@@ -0,0 +1,53 @@
+package system;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures building every player's view from scratch, as done for keyframes
+ * and resets, and updating the army state of a game in the middle of the game.
+ *
+ * @author Axel Li
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(3)
+public class ViewBenchmark {
+	@Param({ "18", "25", "40" })
+	public int size;
+
+	@Param({ "2", "8" })
+	public int kingdoms;
+
+	private GameBoard game;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		game = Scenarios.midGame(size, kingdoms, 100);
+	}
+
+	@Benchmark
+	public int playerViews() {
+		return Scenarios.playerViews(game);
+	}
+
+	@Benchmark
+	public void updateArmyState() {
+		game.updateArmyState();
+	}
+}
@@ -1,12 +1,17 @@
 package players;
 
-import java.util.ArrayDeque;
 import java.util.Comparator;
 import java.util.HashSet;
 import java.util.PriorityQueue;
+import java.util.SplittableRandom;
 
+import system.DeltaSpectator;
 import system.Move;
+import system.MoveQueue;
+import system.PackedView;
 import system.Player;
+import system.Randomized;
+import system.ViewDelta;
 import system.Viewed;
 
 /**
@@ -14,13 +19,15 @@ import system.Viewed;
  * 
  * @author Axel Li
  */
-public class AI implements Player {
+public class AI implements Player, DeltaSpectator, Randomized {
 	private final int playerNumber;
 	private final int iSize;
 	private final int jSize;
-	private ArrayDeque<Move> queue;
-	private Viewed[][] history;
-	private int[][] recent;
+	private MoveQueue queue;
+	private long[][] history;
+	private boolean[][] visible;
+	private int[][] seen;
+	private int tick;
 	private Tracker[][] track;
 	private int[][] armyState;
 	private int[][] shiftOrder;
@@ -29,6 +36,8 @@ public class AI implements Player {
 	private int randomTick;
 	private int iRand;
 	private int jRand;
+	private boolean verbose;
+	private SplittableRandom random;
 
 	// private SpectatorGraphics s;
 	/**
@@ -47,9 +56,10 @@ public class AI implements Player {
 		this.playerNumber = playerNumber;
 		iSize = i;
 		jSize = j;
-		queue = new ArrayDeque<>();
-		history = new Viewed[i][j];
-		recent = new int[i][j];
+		queue = new MoveQueue();
+		history = new long[i][j];
+		visible = new boolean[i][j];
+		seen = new int[i][j];
 		track = new Tracker[i][j];
 		armyState = new int[playerNumber][2];
 		shiftOrder = new int[4][2];
@@ -59,35 +69,102 @@ public class AI implements Player {
 		shiftOrder[3] = new int[] { 0, -1 };
 		iRand = 0;
 		jRand = 0;
+		verbose = true;
+		random = new SplittableRandom();
 		// s = new SpectatorGraphics(i, j, kingdoms);
 		initMatrix();
 	}
 
 	@Override
 	public void update(Viewed[][] board, int[][] armyState) {
+		tick++;
 		for (int i = 0; i < iSize; i++) {
 			for (int j = 0; j < jSize; j++) {
-				if (board[i][j].known) {
-					history[i][j] = new Viewed(true, board[i][j].mountain, board[i][j].type, board[i][j].troops,
-							board[i][j].city, board[i][j].king);
-					recent[i][j] = 0;
-				} else if (board[i][j].mountain && !history[i][j].city && !history[i][j].king
-						&& !history[i][j].mountain) {
-					history[i][j] = new Viewed(false, true, 0, 0, false, false);
-					recent[i][j]++;
-				} else if (!board[i][j].known && history[i][j].type == playerNumber) {
-					history[i][j] = new Viewed(false, false, 0, 0, false, false);
-				} else {
-					recent[i][j]++;
-				}
+				see(i, j, PackedView.pack(board[i][j]));
 			}
 		}
-		if (!(board[iPos][jPos].known && !board[iPos][jPos].mountain && board[iPos][jPos].type == playerNumber
-				&& board[iPos][jPos].troops > 1)) {
+		act(armyState);
+	}
+
+	@Override
+	public void update(ViewDelta delta, int[][] armyState) {
+		tick++;
+		for (int k = 0; k < delta.size(); k++) {
+			see(delta.getI(k), delta.getJ(k), delta.getPacked(k));
+		}
+		act(armyState);
+	}
+
+	@Override
+	public boolean wantsKeyframe() {
+		return false;
+	}
+
+	/**
+	 * Sets whether each move is printed.
+	 * 
+	 * @param verbose
+	 *            - <code>true</code> to print each move
+	 */
+	public void setVerbose(boolean verbose) {
+		this.verbose = verbose;
+	}
+
+	@Override
+	public void setRandom(SplittableRandom random) {
+		this.random = random;
+	}
+
+	/**
+	 * Updates what is remembered about a cell.
+	 * 
+	 * @param i
+	 *            - the i position
+	 * @param j
+	 *            - the j position
+	 * @param v
+	 *            - the current packed view of the cell
+	 */
+	private void see(int i, int j, long v) {
+		visible[i][j] = PackedView.isKnown(v);
+		if (visible[i][j]) {
+			history[i][j] = v;
+			seen[i][j] = tick;
+		} else if (PackedView.isMountain(v) && !PackedView.isCity(history[i][j])
+				&& !PackedView.isKing(history[i][j]) && !PackedView.isMountain(history[i][j])) {
+			history[i][j] = PackedView.OBSTACLE;
+		} else if (PackedView.getType(history[i][j]) == playerNumber) {
+			history[i][j] = PackedView.UNKNOWN;
+		}
+	}
+
+	/**
+	 * Returns how long ago a cell was last seen.
+	 * 
+	 * @param i
+	 *            - the i position
+	 * @param j
+	 *            - the j position
+	 * @return the number of updates since the cell was visible, 0 if visible
+	 */
+	private int recent(int i, int j) {
+		return visible[i][j] ? 0 : tick - seen[i][j];
+	}
+
+	/**
+	 * Makes the next move once the remembered board is up to date.
+	 * 
+	 * @param armyState
+	 *            - the state of each player's army and land
+	 */
+	private void act(int[][] armyState) {
+		long current = history[iPos][jPos];
+		if (!(visible[iPos][jPos] && !PackedView.isMountain(current) && PackedView.getType(current) == playerNumber
+				&& PackedView.getTroops(current) > 1)) {
 			resetPosition();
 		}
 		int[] next = determineMove();
-		if (armyState[playerNumber - 1][0] > 0) {
+		if (verbose && armyState[playerNumber - 1][0] > 0) {
 			System.out.println("Player: " + playerNumber + " From: (" + iPos + "," + jPos + ")" + " To: (" + next[0]
 					+ "," + next[1] + ")" + " Goal: (" + iRand + "," + jRand + ")");
 		}
@@ -110,7 +187,7 @@ public class AI implements Player {
 		int minDist = Integer.MAX_VALUE;
 		for (int i = 0; i < iSize; i++) {
 			for (int j = 0; j < jSize; j++) {
-				if (history[i][j].type != playerNumber && history[i][j].king) {
+				if (PackedView.getType(history[i][j]) != playerNumber && PackedView.isKing(history[i][j])) {
 					int dist = Math.abs(iPos - i) + Math.abs(jPos - j);
 					if (dist < minDist) {
 						minDist = dist;
@@ -121,10 +198,11 @@ public class AI implements Player {
 			}
 		}
 		if (iVal < 0 || jVal < 0) {// TODO: find target location when no kings are known
-			if (--randomTick <= 0 || (history[iRand][jRand].type == playerNumber && recent[iRand][jRand] < 2)
-					|| (history[iRand][jRand].known && history[iRand][jRand].mountain && recent[iRand][jRand] < 2)) {
-				iRand = (int) (Math.random() * iSize);
-				jRand = (int) (Math.random() * jSize);
+			long goal = history[iRand][jRand];
+			if (--randomTick <= 0 || (PackedView.getType(goal) == playerNumber && recent(iRand, jRand) < 2)
+					|| (PackedView.isKnown(goal) && PackedView.isMountain(goal) && recent(iRand, jRand) < 2)) {
+				iRand = random.nextInt(iSize);
+				jRand = random.nextInt(jSize);
 				randomTick = 40;
 			}
 			iVal = iRand;
@@ -157,13 +235,13 @@ public class AI implements Player {
 			}
 		});
 		HashSet<Tracker> set = new HashSet<>();
-		track[iPos][jPos].update(null, 0, 1, history[iPos][jPos].troops, 0);
+		track[iPos][jPos].update(null, 0, 1, PackedView.getTroops(history[iPos][jPos]), 0);
 		pq.offer(track[iPos][jPos]);
 		while (!pq.isEmpty()) {
 			Tracker t = pq.poll();
 			if (t == track[i][j]) {
 				return t;
-			} else if (!history[t.i][t.j].mountain) {
+			} else if (!PackedView.isMountain(history[t.i][t.j])) {
 				set.add(track[t.i][t.j]);
 				shuffleShiftOrder();
 				for (int[] shift : shiftOrder) {
@@ -173,10 +251,11 @@ public class AI implements Player {
 						int lost = t.lost;
 						int gained = t.gained;
 						int steps = t.steps + 1;
-						if (history[iNew][jNew].type == playerNumber && history[iNew][jNew].troops > 0) {
-							gained += history[iNew][jNew].troops - 1;
+						long next = history[iNew][jNew];
+						if (PackedView.getType(next) == playerNumber && PackedView.getTroops(next) > 0) {
+							gained += PackedView.getTroops(next) - 1;
 						} else {
-							lost += history[iNew][jNew].troops + 1;
+							lost += PackedView.getTroops(next) + 1;
 						}
 						double cost = Math.sqrt(steps) * lost / gained;
 						if (!set.contains(track[iNew][jNew]) && !pq.contains(track[iNew][jNew])) {
@@ -199,7 +278,7 @@ public class AI implements Player {
 	 */
 	private void shuffleShiftOrder() {
 		for (int i = 0; i < 4; i++) {
-			int x = (int) (Math.random() * (4 - i));
+			int x = random.nextInt(4 - i);
 			int[] tmp = shiftOrder[x];
 			shiftOrder[x] = shiftOrder[i];
 			shiftOrder[i] = tmp;
@@ -215,8 +294,8 @@ public class AI implements Player {
 		int jMax = 0;
 		for (int i = 0; i < iSize; i++) {
 			for (int j = 0; j < jSize; j++) {
-				if (history[i][j].type == playerNumber && history[i][j].troops > max) {
-					max = history[i][j].troops;
+				if (PackedView.getType(history[i][j]) == playerNumber && PackedView.getTroops(history[i][j]) > max) {
+					max = PackedView.getTroops(history[i][j]);
 					iMax = i;
 					jMax = j;
 				}
@@ -227,14 +306,14 @@ public class AI implements Player {
 	}
 
 	/**
-	 * Sets up the <code>Tracker</code> and <code>Viewed</code> objects in the
+	 * Sets up the <code>Tracker</code> objects and the remembered views in the
 	 * matrices
 	 */
 	private void initMatrix() {
 		for (int i = 0; i < iSize; i++) {
 			for (int j = 0; j < jSize; j++) {
 				track[i][j] = new Tracker(i, j);
-				history[i][j] = new Viewed(false, false, 0, 0, false, false);
+				history[i][j] = PackedView.UNKNOWN;
 			}
 		}
 	}
@@ -251,7 +330,7 @@ public class AI implements Player {
 	}
 
 	@Override
-	public ArrayDeque<Move> getQueue() {
+	public MoveQueue getQueue() {
 		return queue;
 	}
 
@@ -7,7 +7,6 @@ import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.awt.event.KeyEvent;
 import java.awt.event.KeyListener;
-import java.util.ArrayDeque;
 
 import javax.swing.Icon;
 import javax.swing.ImageIcon;
@@ -15,6 +14,8 @@ import javax.swing.JLabel;
 import javax.swing.JPanel;
 
 import system.Move;
+import system.MoveQueue;
+import system.ViewDelta;
 import system.Viewed;
 
 /**
@@ -34,7 +35,7 @@ public class BoardGraphics extends JPanel {
 	private ToggleButton[][] boardButtons;
 	private JLabel[][] boardText;
 	private Viewed[][] board;
-	private ArrayDeque<Move> queue;
+	private MoveQueue queue;
 	private Detector detect;
 	private boolean spectator;
 
@@ -54,7 +55,7 @@ public class BoardGraphics extends JPanel {
 	 * @param queue
 	 *            - the queue for Move
 	 */
-	public BoardGraphics(int i, int j, int boardButtonSize, int playerNumber, Color[] colors, ArrayDeque<Move> queue,
+	public BoardGraphics(int i, int j, int boardButtonSize, int playerNumber, Color[] colors, MoveQueue queue,
 			boolean spectator) {
 		this.iSize = i;
 		this.jSize = j;
@@ -65,7 +66,8 @@ public class BoardGraphics extends JPanel {
 		this.spectator = spectator;
 		initializeButtons();
 		initializePanel();
-		update(initialView());
+		board = initialView();
+		update(board);
 	}
 
 	/**
@@ -75,33 +77,58 @@ public class BoardGraphics extends JPanel {
 	 *            - the current viewable board
 	 */
 	public void update(Viewed[][] board) {
-		this.board = board;
 		for (int x = 0; x < iSize; x++) {
 			for (int y = 0; y < jSize; y++) {
-				if (board[x][y].known) {
-					boardButtons[x][y].setBackground(colors[board[x][y].type + 1]);
-				} else {
-					boardButtons[x][y].setBackground(colors[0]);
-				}
-				if (!board[x][y].known || board[x][y].mountain || board[x][y].troops == 0) {
-					boardText[x][y].setText("");
-				} else {
-					boardText[x][y].setText(Integer.toString(board[x][y].troops));
-				}
-				if (board[x][y].mountain) {
-					boardButtons[x][y].setIcon(icons[1]);
-				} else if (board[x][y].king) {
-					boardButtons[x][y].setIcon(icons[3]);
-				} else if (board[x][y].city) {
-					boardButtons[x][y].setIcon(icons[2]);
-				} else {
-					boardButtons[x][y].setIcon(icons[0]);
-				}
+				this.board[x][y] = board[x][y];
+				updateButton(x, y);
 			}
 		}
 	}
 
-	public ArrayDeque<Move> getQueue() {
+	/**
+	 * Updates only the changed cells of the board.
+	 * 
+	 * @param delta
+	 *            - the cells that changed since the last update
+	 */
+	public void update(ViewDelta delta) {
+		for (int k = 0; k < delta.size(); k++) {
+			board[delta.getI(k)][delta.getJ(k)] = delta.get(k);
+			updateButton(delta.getI(k), delta.getJ(k));
+		}
+	}
+
+	/**
+	 * Updates the button of a single cell.
+	 * 
+	 * @param x
+	 *            - the i position
+	 * @param y
+	 *            - the j position
+	 */
+	private void updateButton(int x, int y) {
+		if (board[x][y].known) {
+			boardButtons[x][y].setBackground(colors[board[x][y].type + 1]);
+		} else {
+			boardButtons[x][y].setBackground(colors[0]);
+		}
+		if (!board[x][y].known || board[x][y].mountain || board[x][y].troops == 0) {
+			boardText[x][y].setText("");
+		} else {
+			boardText[x][y].setText(Integer.toString(board[x][y].troops));
+		}
+		if (board[x][y].mountain) {
+			boardButtons[x][y].setIcon(icons[1]);
+		} else if (board[x][y].king) {
+			boardButtons[x][y].setIcon(icons[3]);
+		} else if (board[x][y].city) {
+			boardButtons[x][y].setIcon(icons[2]);
+		} else {
+			boardButtons[x][y].setIcon(icons[0]);
+		}
+	}
+
+	public MoveQueue getQueue() {
 		return queue;
 	}
 
@@ -199,7 +226,7 @@ public class BoardGraphics extends JPanel {
 
 		private ToggleButton selected;
 		private ToggleButton previous;
-		private ArrayDeque<Move> queue;
+		private MoveQueue queue;
 		private boolean all;
 
 		/**
@@ -208,7 +235,7 @@ public class BoardGraphics extends JPanel {
 		 * @param queue
 		 *            - the queue for moves
 		 */
-		public Detector(ArrayDeque<Move> queue) {
+		public Detector(MoveQueue queue) {
 			this.queue = queue;
 			all = true;
 		}
@@ -329,26 +356,25 @@ public class BoardGraphics extends JPanel {
 				}
 				break;
 			case KeyEvent.VK_E:
-				if (!queue.isEmpty()) {
+				Move x = queue.pollLast();
+				if (x != null) {
 					if (selected != null) {
 						selected.setSelected(false);
 					}
-					Move x = queue.peekLast();
 					selected = boardButtons[x.startI][x.startJ];
 					selected.setSelected(true);
 				}
-				queue.pollLast();
 				break;
 			case KeyEvent.VK_Q:
-				if (!queue.isEmpty()) {
+				Move y = queue.peekFirst();
+				queue.clear();
+				if (y != null) {
 					if (selected != null) {
 						selected.setSelected(false);
 					}
-					Move y = queue.peekFirst();
 					selected = boardButtons[y.startI][y.startJ];
 					selected.setSelected(true);
 				}
-				queue.clear();
 				break;
 			case KeyEvent.VK_F:
 				all = !all;
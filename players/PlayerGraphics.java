@@ -1,13 +1,13 @@
 package players;
 
 import java.awt.Color;
-import java.util.ArrayDeque;
 import java.util.Arrays;
 
 import javax.swing.BoxLayout;
 import javax.swing.JFrame;
 import javax.swing.JPanel;
 import system.Move;
+import system.MoveQueue;
 import system.Player;
 import system.Viewed;
 
@@ -18,7 +18,7 @@ import system.Viewed;
  */
 public class PlayerGraphics extends SpectatorGraphics implements Player {
 	protected final int playerNumber;
-	protected ArrayDeque<Move> queue;
+	protected MoveQueue queue;
 
 	/**
 	 * Creates a new player interface.
@@ -40,7 +40,7 @@ public class PlayerGraphics extends SpectatorGraphics implements Player {
 		queue = super.board.getQueue();
 	}
 
-	public ArrayDeque<Move> getQueue() {
+	public MoveQueue getQueue() {
 		return queue;
 	}
 
@@ -1,15 +1,15 @@
 package players;
 
 import java.awt.Color;
-import java.util.ArrayDeque;
 import java.util.Arrays;
 
 import javax.swing.BoxLayout;
 import javax.swing.JFrame;
 import javax.swing.JPanel;
 
-import system.Move;
-import system.Spectator;
+import system.DeltaSpectator;
+import system.MoveQueue;
+import system.ViewDelta;
 import system.Viewed;
 
 /**
@@ -17,12 +17,13 @@ import system.Viewed;
  * 
  * @author Axel Li
  */
-public class SpectatorGraphics implements Spectator {
+public class SpectatorGraphics implements DeltaSpectator {
 	protected final int iSize;
 	protected final int jSize;
 	protected final int kingdoms;
-	protected Color[] colors = new Color[] { new Color(100, 100, 100), Color.GRAY, Color.RED, Color.BLUE, Color.YELLOW,
-			Color.GREEN, Color.ORANGE, Color.CYAN, Color.MAGENTA, Color.WHITE };
+	private static final Color[] classic = new Color[] { new Color(100, 100, 100), Color.GRAY, Color.RED, Color.BLUE,
+			Color.YELLOW, Color.GREEN, Color.ORANGE, Color.CYAN, Color.MAGENTA, Color.WHITE };
+	protected Color[] colors;
 	protected JFrame frame;
 	protected BoardGraphics board;
 	protected StatGraphics stats;
@@ -38,10 +39,30 @@ public class SpectatorGraphics implements Spectator {
 	 *            - the number of kingdoms
 	 */
 	public SpectatorGraphics(int i, int j, int kingdoms) {
+		this(i, j, kingdoms, palette(kingdoms));
+	}
+
+	/**
+	 * Creates a new spectator interface with its own colours.
+	 * 
+	 * @param i
+	 *            - the i size of the board
+	 * @param j
+	 *            - the j size of the board
+	 * @param kingdoms
+	 *            - the number of kingdoms
+	 * @param colors
+	 *            - the colour of unknown land, of neutral land and of each
+	 *            player, at least <code>kingdoms + 2</code> colours
+	 */
+	public SpectatorGraphics(int i, int j, int kingdoms, Color[] colors) {
+		if (colors.length < kingdoms + 2) {
+			throw new IllegalArgumentException("Need " + (kingdoms + 2) + " colors, got " + colors.length);
+		}
 		this.iSize = i;
 		this.jSize = j;
 		this.kingdoms = kingdoms;
-		colors = Arrays.copyOf(colors, kingdoms + 2);
+		this.colors = colors;
 		initializeGraphics();
 	}
 
@@ -64,11 +85,31 @@ public class SpectatorGraphics implements Spectator {
 		this.iSize = i;
 		this.jSize = j;
 		this.kingdoms = kingdoms;
+		this.colors = palette(kingdoms);
 		this.board = new BoardGraphics(iSize, jSize, (int) (992.0 / iSize), playerNumber, colors,
-				new ArrayDeque<Move>(), false);
+				new MoveQueue(), false);
 		initializeGraphics();
 	}
 
+	/**
+	 * Returns the default colours for a number of kingdoms. The first eight
+	 * players keep their classic colours, and every further player gets the
+	 * next hue around the colour wheel by the golden angle, alternating between
+	 * light and dark shades, so any number of players can be told apart.
+	 * 
+	 * @param kingdoms
+	 *            - the number of kingdoms
+	 * @return the colour of unknown land, of neutral land and of each player
+	 */
+	public static Color[] palette(int kingdoms) {
+		Color[] result = Arrays.copyOf(classic, kingdoms + 2);
+		for (int k = classic.length; k < result.length; k++) {
+			int n = k - classic.length;
+			result[k] = Color.getHSBColor(n * 0.618034f % 1, 0.7f, n % 2 == 0 ? 0.95f : 0.6f);
+		}
+		return result;
+	}
+
 	/**
 	 * Initializes all graphics.
 	 */
@@ -93,4 +134,13 @@ public class SpectatorGraphics implements Spectator {
 		board.update(b);
 		stats.update(armyState);
 	}
+
+	public void update(ViewDelta delta, int[][] armyState) {
+		board.update(delta);
+		stats.update(armyState);
+	}
+
+	public boolean wantsKeyframe() {
+		return false;
+	}
 }
\ No newline at end of file
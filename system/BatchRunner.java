@@ -0,0 +1,343 @@
+package system;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import players.AI;
+
+/**
+ * A headless runner that plays many games between AI players as fast as
+ * possible, spread over a pool of worker threads.
+ *
+ * @author Axel Li
+ */
+public class BatchRunner {
+	private int games = 100;
+	private int threads = Runtime.getRuntime().availableProcessors();
+	private int iSize = 18;
+	private int jSize = 18;
+	private int kingdoms = 8;
+	private double mountain = 0.12;
+	private double city = 0.04;
+	private int maxTicks = 5000;
+	private long seed = new SplittableRandom().nextLong();
+	private MapPool maps;
+
+	/**
+	 * Sets the number of games to play.
+	 *
+	 * @param games
+	 *            - the number of games
+	 * @return <code>true</code> if successful
+	 */
+	public boolean setGames(int games) {
+		if (games > 0) {
+			this.games = games;
+			return true;
+		} else {
+			return false;
+		}
+	}
+
+	/**
+	 * Sets the number of worker threads.
+	 *
+	 * @param threads
+	 *            - the number of threads
+	 * @return <code>true</code> if successful
+	 */
+	public boolean setThreads(int threads) {
+		if (threads > 0) {
+			this.threads = threads;
+			return true;
+		} else {
+			return false;
+		}
+	}
+
+	/**
+	 * Sets the size of the board.
+	 *
+	 * @param i
+	 *            - the i size
+	 * @param j
+	 *            - the j size
+	 * @return <code>true</code> if successful
+	 */
+	public boolean setSize(int i, int j) {
+		if (i > 0 && j > 0) {
+			iSize = i;
+			jSize = j;
+			return true;
+		} else {
+			return false;
+		}
+	}
+
+	/**
+	 * Sets the number of AI players in each game.
+	 *
+	 * @param kingdoms
+	 *            - the number of kingdoms
+	 * @return <code>true</code> if successful
+	 */
+	public boolean setKingdoms(int kingdoms) {
+		if (kingdoms > 1) {
+			this.kingdoms = kingdoms;
+			return true;
+		} else {
+			return false;
+		}
+	}
+
+	/**
+	 * Sets the proportion of mountains and cities.
+	 *
+	 * @param mountain
+	 *            - the proportion of mountains
+	 * @param city
+	 *            - the proportion of cities
+	 * @return <code>true</code> if successful
+	 */
+	public boolean setProportion(double mountain, double city) {
+		if (mountain >= 0 && city >= 0 && mountain + city < 1) {
+			this.mountain = mountain;
+			this.city = city;
+			return true;
+		} else {
+			return false;
+		}
+	}
+
+	/**
+	 * Sets the number of ticks after which an unfinished game is stopped.
+	 *
+	 * @param maxTicks
+	 *            - the maximum number of ticks
+	 * @return <code>true</code> if successful
+	 */
+	public boolean setMaxTicks(int maxTicks) {
+		if (maxTicks > 0) {
+			this.maxTicks = maxTicks;
+			return true;
+		} else {
+			return false;
+		}
+	}
+
+	/**
+	 * Sets the seed that the seed of every game is derived from.
+	 *
+	 * @param seed
+	 *            - the seed of the batch
+	 */
+	public void setSeed(long seed) {
+		this.seed = seed;
+	}
+
+	/**
+	 * Sets the pool that games take their maps from, so map generation overlaps
+	 * with play. The results are then no longer reproducible from the seed.
+	 *
+	 * @param maps
+	 *            - the pool of maps, <code>null</code> to generate every map from
+	 *            the seed of its game
+	 */
+	public void setMapPool(MapPool maps) {
+		this.maps = maps;
+	}
+
+	/**
+	 * Returns the seed that the seed of every game is derived from.
+	 *
+	 * @return the seed of the batch
+	 */
+	public long getSeed() {
+		return seed;
+	}
+
+	/**
+	 * Plays all the games and waits for them to finish.
+	 *
+	 * @return the combined results of every game
+	 * @throws InterruptedException
+	 */
+	public Result run() throws InterruptedException {
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		AtomicInteger next = new AtomicInteger();
+		SplittableRandom root = new SplittableRandom(seed);
+		long[] seeds = new long[games];
+		for (int x = 0; x < games; x++) {
+			seeds[x] = root.nextLong();
+		}
+		List<Callable<Result>> workers = new ArrayList<>();
+		for (int t = 0; t < threads; t++) {
+			workers.add(() -> {
+				Result r = new Result(kingdoms);
+				int x;
+				while ((x = next.getAndIncrement()) < games) {
+					playGame(r, seeds[x]);
+				}
+				return r;
+			});
+		}
+		Result total = new Result(kingdoms);
+		long before = System.nanoTime();
+		try {
+			for (Future<Result> f : pool.invokeAll(workers)) {
+				total.add(f.get());
+			}
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("A game failed", e.getCause());
+		} finally {
+			pool.shutdownNow();
+		}
+		total.nanos = System.nanoTime() - before;
+		return total;
+	}
+
+	/**
+	 * Plays a single game and adds its outcome to the results.
+	 *
+	 * @param r
+	 *            - the results of the worker
+	 * @param seed
+	 *            - the seed of the game
+	 */
+	private void playGame(Result r, long seed) {
+		Player[] players = new Player[kingdoms];
+		for (int x = 0; x < kingdoms; x++) {
+			AI ai = new AI(iSize, jSize, kingdoms, x + 1);
+			ai.setVerbose(false);
+			players[x] = ai;
+		}
+		int maze = (int) Math.sqrt(8.0 / 5 * iSize * jSize / kingdoms);
+		int manhattan = maze - 10 + kingdoms;
+		GameBoard g = new GameBoard(players, new Spectator[0], iSize, jSize, mountain, city, manhattan, maze,
+				seed, maps);
+		while (g.gameEnd() == 0 && g.getCount() < maxTicks) {
+			g.cycle();
+		}
+		r.games++;
+		r.ticks += g.getCount();
+		r.longest = Math.max(r.longest, g.getCount());
+		int winner = g.gameEnd();
+		if (winner > 0) {
+			r.wins[winner - 1]++;
+		} else {
+			r.unfinished++;
+		}
+	}
+
+	/**
+	 * The combined outcome of a batch of games.
+	 *
+	 * @author Axel Li
+	 */
+	public static class Result {
+		public final int[] wins;
+		public int games;
+		public int unfinished;
+		public long ticks;
+		public int longest;
+		public long nanos;
+
+		/**
+		 * Creates empty results.
+		 *
+		 * @param kingdoms
+		 *            - the number of kingdoms
+		 */
+		public Result(int kingdoms) {
+			wins = new int[kingdoms];
+		}
+
+		/**
+		 * Adds the outcome of other games.
+		 *
+		 * @param other
+		 *            - the other results
+		 */
+		public void add(Result other) {
+			for (int x = 0; x < wins.length; x++) {
+				wins[x] += other.wins[x];
+			}
+			games += other.games;
+			unfinished += other.unfinished;
+			ticks += other.ticks;
+			longest = Math.max(longest, other.longest);
+		}
+
+		/**
+		 * Returns the number of games played per second.
+		 *
+		 * @return the games per second
+		 */
+		public double gamesPerSecond() {
+			return games / (nanos / 1e9);
+		}
+
+		/**
+		 * Returns the number of ticks played per second over all games.
+		 *
+		 * @return the ticks per second
+		 */
+		public double ticksPerSecond() {
+			return ticks / (nanos / 1e9);
+		}
+
+		@Override
+		public String toString() {
+			StringBuilder sb = new StringBuilder();
+			sb.append(String.format("%d games in %.2f s: %.2f games/s, %.0f ticks/s%n", games, nanos / 1e9,
+					gamesPerSecond(), ticksPerSecond()));
+			sb.append(String.format("average length %.1f ticks, longest %d ticks, unfinished %d%n",
+					games == 0 ? 0.0 : (double) ticks / games, longest, unfinished));
+			for (int x = 0; x < wins.length; x++) {
+				sb.append(String.format("player %d: %d wins (%.1f%%)%n", x + 1, wins[x],
+						games == 0 ? 0.0 : 100.0 * wins[x] / games));
+			}
+			return sb.toString();
+		}
+	}
+
+	/**
+	 * Runs a batch from the command line.
+	 *
+	 * @param args
+	 *            - games, threads, i size, j size, kingdoms, maximum ticks and
+	 *            seed, each optional
+	 * @throws InterruptedException
+	 */
+	public static void main(String[] args) throws InterruptedException {
+		System.setProperty("java.awt.headless", "true");
+		BatchRunner b = new BatchRunner();
+		if (args.length > 0) {
+			b.setGames(Integer.parseInt(args[0]));
+		}
+		if (args.length > 1) {
+			b.setThreads(Integer.parseInt(args[1]));
+		}
+		if (args.length > 3) {
+			b.setSize(Integer.parseInt(args[2]), Integer.parseInt(args[3]));
+		}
+		if (args.length > 4) {
+			b.setKingdoms(Integer.parseInt(args[4]));
+		}
+		if (args.length > 5) {
+			b.setMaxTicks(Integer.parseInt(args[5]));
+		}
+		if (args.length > 6) {
+			b.setSeed(Long.parseLong(args[6]));
+		}
+		System.out.println("seed " + b.getSeed());
+		System.out.print(b.run());
+	}
+}
@@ -0,0 +1,549 @@
+package system;
+
+/**
+ * The primitive board engine for generals.io. Every cell is stored in flat
+ * arrays indexed by <code>i * jSize + j</code>, and <code>Territory</code> and
+ * <code>City</code> objects are only used to import or export a board.
+ *
+ * @author Axel Li
+ */
+public class BoardEngine {
+	public static final byte LAND = 0;
+	public static final byte MOUNTAIN = 1;
+	public static final byte CITY = 2;
+	public static final byte KING = 3;
+	private static final int CITIES = 0;
+	private static final int LANDS = 1;
+	private final int iSize;
+	private final int jSize;
+	private final byte[] kind;
+	private final int[] owner;
+	private final int[] troops;
+	private final int[][] armyState;
+	private final CellIndex owned;
+	private final CellIndex players;
+	private final boolean[] flagged;
+	private final int[] changed;
+	private int changes;
+	private Vision vision;
+
+	/**
+	 * Creates an empty board engine where every cell is neutral land.
+	 *
+	 * @param i
+	 *            - the i size of the board
+	 * @param j
+	 *            - the j size of the board
+	 * @param kingdoms
+	 *            - the number of kingdoms
+	 */
+	public BoardEngine(int i, int j, int kingdoms) {
+		this.iSize = i;
+		this.jSize = j;
+		kind = new byte[i * j];
+		owner = new int[i * j];
+		troops = new int[i * j];
+		armyState = new int[kingdoms][2];
+		owned = new CellIndex(i * j, 2);
+		players = new CellIndex(i * j, kingdoms);
+		flagged = new boolean[i * j];
+		changed = new int[i * j];
+	}
+
+	/**
+	 * Creates a board engine from a board of <code>Space</code> objects.
+	 *
+	 * @param board
+	 *            - the board to be imported
+	 * @param kingdoms
+	 *            - the number of kingdoms
+	 */
+	public BoardEngine(Space[][] board, int kingdoms) {
+		this(board.length, board[0].length, kingdoms);
+		load(board);
+	}
+
+	/**
+	 * Imports a board of <code>Space</code> objects.
+	 *
+	 * @param board
+	 *            - the board to be imported
+	 */
+	public void load(Space[][] board) {
+		for (int i = 0; i < iSize; i++) {
+			for (int j = 0; j < jSize; j++) {
+				Space s = board[i][j];
+				if (s instanceof City) {
+					City c = (City) s;
+					set(i, j, c.isKing() ? KING : CITY, c.getType(), c.getTroops());
+				} else if (s instanceof Territory) {
+					Territory t = (Territory) s;
+					set(i, j, LAND, t.getType(), t.getTroops());
+				} else {
+					set(i, j, MOUNTAIN, 0, 0);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Exports the board as <code>Space</code> objects.
+	 *
+	 * @return a new matrix of <code>Space</code> objects
+	 */
+	public Space[][] export() {
+		Space[][] result = new Space[iSize][jSize];
+		for (int i = 0; i < iSize; i++) {
+			for (int j = 0; j < jSize; j++) {
+				int x = i * jSize + j;
+				if (kind[x] == LAND) {
+					result[i][j] = new Territory(owner[x], troops[x]);
+				} else if (kind[x] == MOUNTAIN) {
+					result[i][j] = new Space(true);
+				} else {
+					result[i][j] = new City(owner[x], troops[x], kind[x] == KING);
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Sets the fog of war that is told about every change of owner.
+	 *
+	 * @param vision
+	 *            - the fog of war, <code>null</code> for none
+	 */
+	public void setVision(Vision vision) {
+		this.vision = vision;
+	}
+
+	/**
+	 * Sets the contents of a cell.
+	 *
+	 * @param i
+	 *            - the i position
+	 * @param j
+	 *            - the j position
+	 * @param kind
+	 *            - the kind of the cell
+	 * @param owner
+	 *            - the player number of the owner, 0 if neutral
+	 * @param troops
+	 *            - the number of troops
+	 */
+	public void set(int i, int j, byte kind, int owner, int troops) {
+		set(i * jSize + j, kind, owner, troops);
+	}
+
+	/**
+	 * Sets the contents of a cell and updates the totals, the indexes and the
+	 * fog of war.
+	 *
+	 * @param x
+	 *            - the index of the cell
+	 * @param kind
+	 *            - the kind of the cell
+	 * @param owner
+	 *            - the player number of the owner, 0 if neutral
+	 * @param troops
+	 *            - the number of troops
+	 */
+	private void set(int x, byte kind, int owner, int troops) {
+		if (this.owner[x] != 0) {
+			armyState[this.owner[x] - 1][0]--;
+			armyState[this.owner[x] - 1][1] -= this.troops[x];
+			if ((this.kind[x] == LAND) != (kind == LAND)) {
+				setOwner(x, 0);
+			}
+		}
+		this.kind[x] = kind;
+		setOwner(x, kind == MOUNTAIN ? 0 : owner);
+		this.troops[x] = troops;
+		markChanged(x);
+		if (this.owner[x] != 0) {
+			armyState[owner - 1][0]++;
+			armyState[owner - 1][1] += troops;
+		}
+	}
+
+	/**
+	 * Copies the kind, owner and troops of every cell into a snapshot.
+	 *
+	 * @param s
+	 *            - the snapshot to be filled
+	 */
+	public void save(Snapshot s) {
+		System.arraycopy(kind, 0, s.kind, 0, kind.length);
+		System.arraycopy(owner, 0, s.owner, 0, owner.length);
+		System.arraycopy(troops, 0, s.troops, 0, troops.length);
+	}
+
+	/**
+	 * Restores the cells from a snapshot. Only the cells that differ are
+	 * changed, so the totals, indexes and fog of war are updated incrementally.
+	 *
+	 * @param s
+	 *            - the snapshot
+	 */
+	public void restore(Snapshot s) {
+		for (int x = 0; x < kind.length; x++) {
+			if (kind[x] != s.kind[x] || owner[x] != s.owner[x] || troops[x] != s.troops[x]) {
+				set(x, s.kind[x], s.owner[x], s.troops[x]);
+			}
+		}
+	}
+
+	/**
+	 * Reinforces all valid troops in a cycle.
+	 *
+	 * @param count
+	 *            - the number of the current cycle
+	 */
+	public void reinforceAll(int count) {
+		if (count % 2 == 0) {
+			reinforce(CITIES);
+		}
+		if (count % 20 == 0) {
+			reinforce(LANDS);
+		}
+	}
+
+	/**
+	 * Reinforces every owned cell in a group of the index.
+	 *
+	 * @param g
+	 *            - the group to be reinforced
+	 */
+	private void reinforce(int g) {
+		int[] cells = owned.getCells(g);
+		for (int k = owned.size(g) - 1; k >= 0; k--) {
+			int x = cells[k];
+			troops[x]++;
+			armyState[owner[x] - 1][1]++;
+			markChanged(x);
+		}
+	}
+
+	/**
+	 * Attempts to make a move.
+	 *
+	 * @param m
+	 *            - the move being made
+	 * @param player
+	 *            - the player number of the player making the move
+	 * @return the player number of the owner of a captured king, 0 if the move
+	 *         was made without capturing a king, -1 if the move is invalid
+	 */
+	public int makeMove(Move m, int player) {
+		if (!isValid(m)) {
+			return -1;
+		}
+		int from = m.startI * jSize + m.startJ;
+		int to = m.endI * jSize + m.endJ;
+		if (kind[from] == MOUNTAIN || owner[from] != player || kind[to] == MOUNTAIN) {
+			return -1;
+		}
+		int moving = 0;
+		if (troops[from] > 1) {
+			moving = m.all ? troops[from] - 1 : troops[from] / 2;
+			troops[from] -= moving;
+			armyState[player - 1][1] -= moving;
+			markChanged(from);
+		}
+		markChanged(to);
+		int previous = owner[to];
+		if (previous == player) {
+			troops[to] += moving;
+			armyState[player - 1][1] += moving;
+		} else if (moving > troops[to]) {
+			boolean king = kind[to] == KING;
+			if (previous != 0) {
+				armyState[previous - 1][0]--;
+				armyState[previous - 1][1] -= troops[to];
+			}
+			setOwner(to, player);
+			troops[to] = moving - troops[to];
+			armyState[player - 1][0]++;
+			armyState[player - 1][1] += troops[to];
+			if (king) {
+				kind[to] = CITY;
+				return previous;
+			}
+		} else {
+			troops[to] -= moving;
+			if (previous != 0) {
+				armyState[previous - 1][1] -= moving;
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 * Checks whether a move is in bounds and is exactly one step.
+	 *
+	 * @param m
+	 *            - the move to be checked
+	 * @return <code> true </code> if the move is valid based on the parameters
+	 */
+	public boolean isValid(Move m) {
+		return m.startI >= 0 && m.startI < iSize && m.startJ >= 0 && m.startJ < jSize && m.endI >= 0 && m.endI < iSize
+				&& m.endJ >= 0 && m.endJ < jSize && Math.abs(m.startI - m.endI) + Math.abs(m.startJ - m.endJ) == 1;
+	}
+
+	/**
+	 * Converts land belonging to a player when the king is captured.
+	 *
+	 * @param before
+	 *            - the previous player number
+	 * @param after
+	 *            - the new player number
+	 */
+	public void convert(int before, int after) {
+		int[] cells = players.getCells(before - 1);
+		for (int k = players.size(before - 1) - 1; k >= 0; k--) {
+			int x = cells[k];
+			setOwner(x, after);
+			markChanged(x);
+		}
+		armyState[after - 1][0] += armyState[before - 1][0];
+		armyState[after - 1][1] += armyState[before - 1][1];
+		armyState[before - 1][0] = 0;
+		armyState[before - 1][1] = 0;
+	}
+
+	/**
+	 * Changes the owner of a cell and updates the index of owned cells and the
+	 * fog of war.
+	 *
+	 * @param x
+	 *            - the index of the cell
+	 * @param after
+	 *            - the new owner
+	 */
+	private void setOwner(int x, int after) {
+		int before = owner[x];
+		if (before == after) {
+			return;
+		}
+		owner[x] = after;
+		if (before == 0 && after != 0) {
+			owned.add(kind[x] == LAND ? LANDS : CITIES, x);
+		} else if (before != 0 && after == 0) {
+			owned.remove(kind[x] == LAND ? LANDS : CITIES, x);
+		}
+		if (before != 0) {
+			players.remove(before - 1, x);
+		}
+		if (after != 0) {
+			players.add(after - 1, x);
+		}
+		if (vision != null) {
+			vision.ownerChanged(x, before, after);
+		}
+	}
+
+	/**
+	 * Records a cell whose contents changed.
+	 *
+	 * @param x
+	 *            - the index of the cell
+	 */
+	private void markChanged(int x) {
+		if (!flagged[x]) {
+			flagged[x] = true;
+			changed[changes++] = x;
+		}
+	}
+
+	/**
+	 * Returns the cells whose contents changed since the last call to
+	 * <code>clearChanges</code>.
+	 *
+	 * @return an array whose first <code>getChanges()</code> entries are cell
+	 *         indexes
+	 */
+	public int[] getChanged() {
+		return changed;
+	}
+
+	/**
+	 * Returns the number of cells whose contents changed.
+	 *
+	 * @return the number of changed cells
+	 */
+	public int getChanges() {
+		return changes;
+	}
+
+	/**
+	 * Checks whether the contents of a cell changed.
+	 *
+	 * @param x
+	 *            - the index of the cell
+	 * @return <code>true</code> if the cell changed since the last call to
+	 *         <code>clearChanges</code>
+	 */
+	public boolean isChanged(int x) {
+		return flagged[x];
+	}
+
+	/**
+	 * Forgets the changed cells.
+	 */
+	public void clearChanges() {
+		for (int k = 0; k < changes; k++) {
+			flagged[changed[k]] = false;
+		}
+		changes = 0;
+	}
+
+	/**
+	 * Returns the cells owned by a player.
+	 *
+	 * @param p
+	 *            - the player number
+	 * @return an array whose first <code>getLand(p)</code> entries are cell
+	 *         indexes
+	 */
+	public int[] getCells(int p) {
+		return players.getCells(p - 1);
+	}
+
+	/**
+	 * Returns the number of cells owned by a player.
+	 *
+	 * @param p
+	 *            - the player number
+	 * @return the number of owned cells
+	 */
+	public int getLand(int p) {
+		return players.size(p - 1);
+	}
+
+	/**
+	 * Returns the running land and troop totals of each player. The matrix is
+	 * updated in place as the board changes.
+	 *
+	 * @return a matrix with the land and troops of each player
+	 */
+	public int[][] getArmyState() {
+		return armyState;
+	}
+
+	/**
+	 * Counts the land and troops of each player from scratch.
+	 *
+	 * @return a new matrix with the land and troops of each player
+	 */
+	public int[][] recount() {
+		int[][] result = new int[armyState.length][2];
+		for (int x = 0; x < kind.length; x++) {
+			if (owner[x] != 0) {
+				result[owner[x] - 1][0]++;
+				result[owner[x] - 1][1] += troops[x];
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Checks the running totals and the index of owned cells against a full
+	 * recount.
+	 *
+	 * @throws IllegalStateException
+	 *             if the running totals or the index are wrong
+	 */
+	public void verify() {
+		for (int x = 0; x < kind.length; x++) {
+			if (owned.contains(x) != (owner[x] != 0) || players.contains(x) != (owner[x] != 0)) {
+				throw new IllegalStateException("Cell " + x + " is indexed wrongly");
+			}
+		}
+		int[][] expected = recount();
+		for (int p = 0; p < expected.length; p++) {
+			if (expected[p][0] != armyState[p][0] || expected[p][1] != armyState[p][1]
+					|| expected[p][0] != players.size(p)) {
+				throw new IllegalStateException("Player " + (p + 1) + " has land " + armyState[p][0] + " and troops "
+						+ armyState[p][1] + " but a recount gives land " + expected[p][0] + " and troops "
+						+ expected[p][1]);
+			}
+		}
+	}
+
+	/**
+	 * Returns the view of a visible cell.
+	 *
+	 * @param x
+	 *            - the index of the cell
+	 * @return the packed view of the cell
+	 */
+	public long known(int x) {
+		if (kind[x] == MOUNTAIN) {
+			return PackedView.VISIBLE_MOUNTAIN;
+		}
+		return PackedView.pack(true, false, owner[x], troops[x], kind[x] == CITY, kind[x] == KING);
+	}
+
+	/**
+	 * Returns the view of a cell hidden by the fog of war.
+	 *
+	 * @param x
+	 *            - the index of the cell
+	 * @return the packed view of the cell
+	 */
+	public long unknown(int x) {
+		return kind[x] == LAND ? PackedView.UNKNOWN : PackedView.OBSTACLE;
+	}
+
+	public int getISize() {
+		return iSize;
+	}
+
+	public int getJSize() {
+		return jSize;
+	}
+
+	/**
+	 * Returns the number of cells.
+	 *
+	 * @return the number of cells on the board
+	 */
+	public int size() {
+		return kind.length;
+	}
+
+	/**
+	 * Returns the kind of a cell.
+	 *
+	 * @param x
+	 *            - the index of the cell
+	 * @return <code>LAND</code>, <code>MOUNTAIN</code>, <code>CITY</code> or
+	 *         <code>KING</code>
+	 */
+	public byte getKind(int x) {
+		return kind[x];
+	}
+
+	/**
+	 * Returns the owner of a cell.
+	 *
+	 * @param x
+	 *            - the index of the cell
+	 * @return the player number of the owner, 0 if neutral
+	 */
+	public int getOwner(int x) {
+		return owner[x];
+	}
+
+	/**
+	 * Returns the troops on a cell.
+	 *
+	 * @param x
+	 *            - the index of the cell
+	 * @return the number of troops
+	 */
+	public int getTroops(int x) {
+		return troops[x];
+	}
+}
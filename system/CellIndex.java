@@ -0,0 +1,95 @@
+package system;
+
+import java.util.Arrays;
+
+/**
+ * An index of cells split into groups, where each cell belongs to at most one
+ * group. Cells can be added, removed and listed in constant time.
+ *
+ * @author Axel Li
+ */
+public class CellIndex {
+	private final int[] position;
+	private final int[][] cells;
+	private final int[] sizes;
+
+	/**
+	 * Creates an empty index.
+	 *
+	 * @param size
+	 *            - the number of cells on the board
+	 * @param groups
+	 *            - the number of groups
+	 */
+	public CellIndex(int size, int groups) {
+		position = new int[size];
+		Arrays.fill(position, -1);
+		cells = new int[groups][16];
+		sizes = new int[groups];
+	}
+
+	/**
+	 * Adds a cell to a group.
+	 *
+	 * @param g
+	 *            - the group
+	 * @param x
+	 *            - the index of the cell
+	 */
+	public void add(int g, int x) {
+		if (sizes[g] == cells[g].length) {
+			cells[g] = Arrays.copyOf(cells[g], sizes[g] * 2);
+		}
+		position[x] = sizes[g];
+		cells[g][sizes[g]++] = x;
+	}
+
+	/**
+	 * Removes a cell from a group.
+	 *
+	 * @param g
+	 *            - the group the cell is in
+	 * @param x
+	 *            - the index of the cell
+	 */
+	public void remove(int g, int x) {
+		int k = position[x];
+		int last = cells[g][--sizes[g]];
+		cells[g][k] = last;
+		position[last] = k;
+		position[x] = -1;
+	}
+
+	/**
+	 * Checks whether a cell is in any group.
+	 *
+	 * @param x
+	 *            - the index of the cell
+	 * @return <code>true</code> if the cell is indexed
+	 */
+	public boolean contains(int x) {
+		return position[x] >= 0;
+	}
+
+	/**
+	 * Returns the cells of a group.
+	 *
+	 * @param g
+	 *            - the group
+	 * @return an array whose first <code>size(g)</code> entries are cell indexes
+	 */
+	public int[] getCells(int g) {
+		return cells[g];
+	}
+
+	/**
+	 * Returns the number of cells in a group.
+	 *
+	 * @param g
+	 *            - the group
+	 * @return the number of cells
+	 */
+	public int size(int g) {
+		return sizes[g];
+	}
+}
@@ -0,0 +1,25 @@
+package system;
+
+/**
+ * A spectator that can be updated with only the cells that changed.
+ *
+ * @author Axel Li
+ */
+public interface DeltaSpectator extends Spectator {
+	/**
+	 * Updates the viewer with the cells whose view changed since its last frame.
+	 * 
+	 * @param delta
+	 *            - the changed cells, or every cell if it is a keyframe
+	 * @param armyState
+	 *            - the state of each player's army and land
+	 */
+	public void update(ViewDelta delta, int[][] armyState);
+
+	/**
+	 * Asks whether the viewer wants every cell in its next frame.
+	 * 
+	 * @return <code>true</code> if the next frame should be a keyframe
+	 */
+	public boolean wantsKeyframe();
+}
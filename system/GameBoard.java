@@ -1,6 +1,17 @@
 package system;
 
-import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import javax.swing.SwingUtilities;
 
 import players.PlayerGraphics;
 import players.SpectatorGraphics;
@@ -11,18 +22,42 @@ import players.SpectatorGraphics;
  * @author Axel Li
  */
 public class GameBoard {
+	private static final int attempts = 1000;
 	private final int kingdoms;
 	private final int iSize;
 	private final int jSize;
 	private GameGenerator g;
+	private MapPool maps;
 	private Spectator[] spectators;
 	private Player[] players;
-	private ArrayDeque<Move>[] moves;
-	private Space[][] board;
+	private MoveQueue[] moves;
+	private BoardEngine board;
+	private Vision vision;
+	private long[] all;
+	private Viewed[][][] legacy;
+	private Object[] legacyLocks;
+	private ViewDelta[] deltas;
+	private ViewDelta keyframe;
+	private boolean[] keyframes;
+	private boolean spectatorKeyframe;
+	private boolean fresh;
+	private ForkJoinPool pool;
+	private ForkJoinTask<?>[] tasks;
+	private ForkJoinTask<?> fanOut;
+	private long deadline;
+	private ThreadPoolExecutor[] threads;
+	private Future<?>[] pending;
+	private boolean[] wants;
+	private boolean[] sent;
+	private GameMetrics metrics;
+	private long[] building;
+	private long[] updateStarts;
 	private boolean[] dead;
 	private int[][] armyState;
 	private int count;
 	private boolean inGame;
+	private boolean debug;
+	private ReplayWriter replay;
 
 	/**
 	 * Creates a new game board.
@@ -47,7 +82,8 @@ public class GameBoard {
 		this.kingdoms = kingdoms;
 		this.iSize = i;
 		this.jSize = j;
-		board = new Space[i][j];
+		board = new BoardEngine(i, j, kingdoms);
+		initializeVision();
 		g = new GameGenerator(i, j, proportionMountains, proportionCities, kingdoms, minMaze, minMan);
 		initializePlayers();
 		setQueues();
@@ -72,14 +108,69 @@ public class GameBoard {
 	 */
 	public GameBoard(Player[] players, Spectator[] spectators, int i, int j, double proportionMountains,
 			double proportionCities, int minMan, int minMaze) {
+		this(players, spectators, i, j, proportionMountains, proportionCities, minMan, minMaze,
+				new SplittableRandom().nextLong());
+	}
+
+	/**
+	 * Creates a new game board with custom players whose games are reproducible
+	 * from a seed.
+	 * 
+	 * @param players
+	 *            - the custom players
+	 * @param spectators
+	 *            - the spectators
+	 * @param proportionMountains
+	 *            - the proportion of mountains
+	 * @param proportionCities
+	 *            - the proportion of cities
+	 * @param minMan
+	 *            - minimum manhattan distance between kingdoms
+	 * @param minMaze
+	 *            - minimum maze distance between kingdoms
+	 * @param seed
+	 *            - the seed of the game
+	 */
+	public GameBoard(Player[] players, Spectator[] spectators, int i, int j, double proportionMountains,
+			double proportionCities, int minMan, int minMaze, long seed) {
+		this(players, spectators, i, j, proportionMountains, proportionCities, minMan, minMaze, seed, null);
+	}
+
+	/**
+	 * Creates a new game board with custom players that takes its maps from a
+	 * pool of generated maps when one is ready.
+	 * 
+	 * @param players
+	 *            - the custom players
+	 * @param spectators
+	 *            - the spectators
+	 * @param proportionMountains
+	 *            - the proportion of mountains
+	 * @param proportionCities
+	 *            - the proportion of cities
+	 * @param minMan
+	 *            - minimum manhattan distance between kingdoms
+	 * @param minMaze
+	 *            - minimum maze distance between kingdoms
+	 * @param seed
+	 *            - the seed of the game
+	 * @param maps
+	 *            - the pool of maps, <code>null</code> to always generate the
+	 *            map from the seed
+	 */
+	public GameBoard(Player[] players, Spectator[] spectators, int i, int j, double proportionMountains,
+			double proportionCities, int minMan, int minMaze, long seed, MapPool maps) {
+		this.maps = maps;
 		this.kingdoms = players.length;
 		this.iSize = i;
 		this.jSize = j;
-		board = new Space[i][j];
+		board = new BoardEngine(i, j, kingdoms);
+		initializeVision();
 		this.players = players;
-		this.spectators = spectators;
-		g = new GameGenerator(iSize, jSize, proportionMountains, proportionCities, kingdoms, minMaze, minMan);
+		this.spectators = mailboxes(spectators);
+		g = new GameGenerator(iSize, jSize, proportionMountains, proportionCities, kingdoms, minMaze, minMan, seed);
 		setQueues();
+		setRandom();
 		reset();
 	}
 
@@ -105,13 +196,44 @@ public class GameBoard {
 	 */
 	public GameBoard(Space[][] board, Player[] players, Spectator[] spectators, double proportionMountains,
 			double proportionCities, int minMan, int minMaze) {
+		this(board, players, spectators, proportionMountains, proportionCities, minMan, minMaze,
+				new SplittableRandom().nextLong());
+	}
+
+	/**
+	 * Creates a custom game board whose games are reproducible from a seed.
+	 * 
+	 * @param board
+	 *            -the custom board
+	 * @param players
+	 *            - the custom players
+	 * @param spectators
+	 *            - the spectators
+	 * @param propotionMountains
+	 *            - number of mountains (for the game board generator)
+	 * @param proportionCities
+	 *            - number of cities (for the game board generator)
+	 * @param minMan
+	 *            - minimum manhattan distance between kings (for the game board
+	 *            generator)
+	 * @param minMaze
+	 *            - minimum maze distance between kings (for the game board
+	 *            generator)
+	 * @param seed
+	 *            - the seed of the game
+	 */
+	public GameBoard(Space[][] board, Player[] players, Spectator[] spectators, double proportionMountains,
+			double proportionCities, int minMan, int minMaze, long seed) {
 		this.kingdoms = players.length;
 		this.iSize = board.length;
 		this.jSize = board[0].length;
+		this.board = new BoardEngine(iSize, jSize, kingdoms);
+		initializeVision();
 		this.players = players;
-		this.spectators = spectators;
-		g = new GameGenerator(iSize, jSize, proportionMountains, proportionCities, kingdoms, minMaze, minMan);
+		this.spectators = mailboxes(spectators);
+		g = new GameGenerator(iSize, jSize, proportionMountains, proportionCities, kingdoms, minMaze, minMan, seed);
 		setQueues();
+		setRandom();
 		reset(board);
 	}
 
@@ -124,19 +246,28 @@ public class GameBoard {
 	public void reset(Space[][] board) {
 		dead = new boolean[kingdoms];
 		count = 0;
-		this.board = board;
+		this.board.load(board);
+		record();
 		updateArmyState();
+		rebuildViews();
 		updatePlayers();
 	}
 
 	/**
 	 * Resets the game and randomly generates the board.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the settings of the generator can never be met
+	 * @throws IllegalStateException
+	 *             if no valid board was found
 	 */
 	public void reset() {
 		dead = new boolean[kingdoms];
 		count = 0;
 		randomize();
+		record();
 		updateArmyState();
+		rebuildViews();
 		updatePlayers();
 	}
 
@@ -144,11 +275,33 @@ public class GameBoard {
 	 * Cycles the game for one round.
 	 */
 	public void cycle() {
+		TickEvent event = new TickEvent();
+		event.begin();
+		long start = System.nanoTime();
 		count++;
 		reinforceAll();
+		long reinforced = System.nanoTime();
 		step();
+		if (replay != null) {
+			replay.tick(count);
+		}
+		long stepped = System.nanoTime();
 		updateArmyState();
+		long counted = System.nanoTime();
 		updatePlayers();
+		long end = System.nanoTime();
+		long built = 0;
+		for (int p = 0; p <= kingdoms; p++) {
+			built += building[p];
+		}
+		metrics.cycle(reinforced - start, stepped - reinforced, counted - stepped, built, end - counted, end - start);
+		event.count = count;
+		event.reinforce = reinforced - start;
+		event.step = stepped - reinforced;
+		event.armyState = counted - stepped;
+		event.views = built;
+		event.players = end - counted;
+		event.commit();
 	}
 
 	/**
@@ -160,6 +313,15 @@ public class GameBoard {
 		return count;
 	}
 
+	/**
+	 * Returns the seed of the game.
+	 * 
+	 * @return the seed the board and the players' random streams come from
+	 */
+	public long getSeed() {
+		return g.getSeed();
+	}
+
 	/**
 	 * Returns the status of the players.
 	 * 
@@ -169,6 +331,220 @@ public class GameBoard {
 		return dead;
 	}
 
+	/**
+	 * Sets the debug mode. In debug mode the running army state and the cached
+	 * views are checked against a full recount after every cycle.
+	 * 
+	 * @param debug
+	 *            - <code>true</code> to check the army state
+	 */
+	public void setDebug(boolean debug) {
+		this.debug = debug;
+	}
+
+	/**
+	 * Sets the pool that builds and delivers the players' views in parallel.
+	 * Players and spectators are then updated on pool threads, each player on
+	 * one thread at a time, and must not depend on each other's updates. The
+	 * boards of later resets are also generated on the pool.
+	 * 
+	 * @param pool
+	 *            - the pool, <code>null</code> to update them one after another
+	 *            on the calling thread
+	 */
+	public void setPool(ForkJoinPool pool) {
+		this.pool = pool;
+		g.setPool(pool);
+		if (pool != null && tasks == null) {
+			tasks = new ForkJoinTask<?>[kingdoms + 1];
+			for (int i = 0; i < kingdoms; i++) {
+				int index = i;
+				tasks[i] = ForkJoinTask.adapt(() -> updatePlayer(index));
+			}
+			tasks[kingdoms] = ForkJoinTask.adapt(this::updateSpectators);
+			fanOut = ForkJoinTask.adapt(() -> ForkJoinTask.invokeAll(tasks));
+		}
+	}
+
+	/**
+	 * Sets what happens to regions that are cut off by mountains on the boards
+	 * of later resets.
+	 * 
+	 * @param connectivity
+	 *            - <code>NONE</code> to leave them, <code>FILL</code> to turn
+	 *            them into mountains or <code>REJECT</code> to try another board
+	 */
+	public void setConnectivity(GameGenerator.Connectivity connectivity) {
+		g.setConnectivity(connectivity);
+	}
+
+	/**
+	 * Sets the time each player has to handle its update. With a deadline every
+	 * player is updated on its own thread, and the cycle waits for the updates
+	 * no longer than the deadline. A player that misses it makes no move that
+	 * cycle, skips its updates until it is done, and then receives a keyframe.
+	 * Should be set before the first cycle.
+	 * 
+	 * @param deadline
+	 *            - the time in milliseconds, 0 to update the players on the
+	 *            calling thread or the pool
+	 * @return <code>true</code> if successful
+	 */
+	public boolean setDeadline(int deadline) {
+		if (deadline >= 0) {
+			this.deadline = deadline * 1_000_000L;
+			if (deadline > 0 && threads == null) {
+				threads = new ThreadPoolExecutor[kingdoms];
+				for (int i = 0; i < kingdoms; i++) {
+					String name = "player-" + (i + 1);
+					threads[i] = new ThreadPoolExecutor(1, 1, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+						Thread t = new Thread(r, name);
+						t.setDaemon(true);
+						return t;
+					});
+					threads[i].allowCoreThreadTimeOut(true);
+				}
+				pending = new Future<?>[kingdoms];
+				wants = new boolean[kingdoms];
+				sent = new boolean[kingdoms];
+			}
+			return true;
+		} else {
+			return false;
+		}
+	}
+
+	/**
+	 * Returns the number of cycles in which a player did not finish its update
+	 * before the deadline, including cycles it was skipped because it was still
+	 * busy.
+	 * 
+	 * @param p
+	 *            - the player number
+	 * @return the number of missed deadlines
+	 */
+	public int getMisses(int p) {
+		return metrics.getMisses(p);
+	}
+
+	/**
+	 * Returns the state of each player's army and land as last sent to the
+	 * players.
+	 * 
+	 * @return the army state, which must not be changed
+	 */
+	int[][] getArmyState() {
+		return armyState;
+	}
+
+	/**
+	 * Returns the metrics of the game, which can be registered as an MBean.
+	 * 
+	 * @return the metrics
+	 */
+	public GameMetrics getMetrics() {
+		return metrics;
+	}
+
+	/**
+	 * Takes a snapshot of the game.
+	 * 
+	 * @return a new snapshot
+	 */
+	public Snapshot snapshot() {
+		Snapshot s = new Snapshot(iSize, jSize, kingdoms);
+		snapshot(s);
+		return s;
+	}
+
+	/**
+	 * Takes a snapshot of the game into an existing snapshot, which makes no
+	 * allocations.
+	 * 
+	 * @param s
+	 *            - the snapshot to be filled
+	 */
+	public void snapshot(Snapshot s) {
+		board.save(s);
+		System.arraycopy(dead, 0, s.dead, 0, kingdoms);
+		s.count = count;
+	}
+
+	/**
+	 * Restores the game to a snapshot taken from this game board. The players
+	 * receive the difference with their next update.
+	 * 
+	 * @param s
+	 *            - the snapshot
+	 */
+	public void restore(Snapshot s) {
+		board.restore(s);
+		boolean revived = false;
+		for (int i = 0; i < kingdoms; i++) {
+			revived |= dead[i] && !s.dead[i];
+			keyframes[i] |= dead[i] != s.dead[i];
+		}
+		System.arraycopy(s.dead, 0, dead, 0, kingdoms);
+		count = s.count;
+		updateArmyState();
+		if (revived) {
+			rebuildViews();
+		}
+	}
+
+	/**
+	 * Records the game in a replay, starting with the current board. The replay
+	 * is not closed by the game board.
+	 * 
+	 * @param replay
+	 *            - the replay, <code>null</code> to stop recording
+	 */
+	public void setReplay(ReplayWriter replay) {
+		this.replay = replay;
+		record();
+	}
+
+	/**
+	 * Records the whole board in the replay, if there is one.
+	 */
+	private void record() {
+		if (replay != null) {
+			replay.map(board, g.getSeed(), count, kingdoms);
+		}
+	}
+
+	/**
+	 * Returns the cells owned by a player.
+	 * 
+	 * @param p
+	 *            - the player number
+	 * @return an array with the index <code>i * jSize + j</code> of each owned
+	 *         cell
+	 */
+	public int[] getCells(int p) {
+		return Arrays.copyOf(board.getCells(p), board.getLand(p));
+	}
+
+	/**
+	 * Returns the number of cells owned by a player.
+	 * 
+	 * @param p
+	 *            - the player number
+	 * @return the number of owned cells
+	 */
+	public int getLand(int p) {
+		return board.getLand(p);
+	}
+
+	/**
+	 * Exports the current board.
+	 * 
+	 * @return a new matrix of <code>Space</code> objects
+	 */
+	public Space[][] getBoard() {
+		return board.export();
+	}
+
 	/**
 	 * Checks if the game has ended.
 	 * 
@@ -199,39 +575,88 @@ public class GameBoard {
 	}
 
 	/**
-	 * Randomly generates the game board.
+	 * Randomly generates the game board within a bounded number of attempts, or
+	 * takes a ready map from the pool. There is no time limit, which would make
+	 * the board depend on the speed of the machine and not only on the seed.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the settings of the generator can never be met
+	 * @throws IllegalStateException
+	 *             if no valid board was found
 	 */
 	private void randomize() {
-		boolean successful = false;
-		while (!successful) {
-			successful = g.create(100, false);
+		long start = System.nanoTime();
+		int[][] grid = maps == null ? null : maps.take(g);
+		if (grid == null) {
+			String problem = g.getProblem();
+			if (problem != null) {
+				throw new IllegalArgumentException(problem);
+			}
+			if (!g.create(attempts, 0, false)) {
+				throw new IllegalStateException("No valid board found in " + attempts + " attempts");
+			}
+			grid = g.getGrid();
 		}
-		int[][] grid = g.getGrid();
+		metrics.generated(System.nanoTime() - start);
 		for (int i = 0; i < iSize; i++) {
 			for (int j = 0; j < jSize; j++) {
 				if (grid[i][j] == 0) {
-					board[i][j] = new Territory(0, 0);
+					board.set(i, j, BoardEngine.LAND, 0, 0);
 				} else if (grid[i][j] == -1) {
-					board[i][j] = new Space(true);
+					board.set(i, j, BoardEngine.MOUNTAIN, 0, 0);
 				} else if (grid[i][j] == -2) {
-					board[i][j] = new City(0, g.getRandomCity(), false);
+					board.set(i, j, BoardEngine.CITY, 0, g.getRandomCity());
 				} else {
-					board[i][j] = new City(grid[i][j], 1, true);
+					board.set(i, j, BoardEngine.KING, grid[i][j], 1);
 				}
 			}
 		}
 	}
 
+	/**
+	 * Initializes the fog of war, the cached view and the metrics.
+	 */
+	private void initializeVision() {
+		vision = new Vision(iSize, jSize, kingdoms);
+		board.setVision(vision);
+		all = new long[iSize * jSize];
+		legacy = new Viewed[kingdoms + 1][][];
+		legacyLocks = new Object[kingdoms + 1];
+		for (int p = 0; p <= kingdoms; p++) {
+			legacyLocks[p] = new Object();
+		}
+		deltas = new ViewDelta[kingdoms + 1];
+		for (int p = 0; p <= kingdoms; p++) {
+			deltas[p] = new ViewDelta(iSize, jSize);
+		}
+		keyframe = new ViewDelta(iSize, jSize);
+		keyframes = new boolean[kingdoms];
+		metrics = new GameMetrics(kingdoms);
+		building = new long[kingdoms + 1];
+		updateStarts = new long[kingdoms];
+	}
+
 	/**
 	 * Gets the queues for moves from each player.
 	 */
 	private void setQueues() {
-		moves = new ArrayDeque[kingdoms];
+		moves = new MoveQueue[kingdoms];
 		for (int i = 0; i < kingdoms; i++) {
 			moves[i] = players[i].getQueue();
 		}
 	}
 
+	/**
+	 * Gives each player that makes random choices its own random stream.
+	 */
+	private void setRandom() {
+		for (int i = 0; i < kingdoms; i++) {
+			if (players[i] instanceof Randomized) {
+				((Randomized) players[i]).setRandom(g.getPlayerRandom(i + 1));
+			}
+		}
+	}
+
 	/**
 	 * Initializes all players.
 	 */
@@ -240,21 +665,50 @@ public class GameBoard {
 		for (int i = 0; i < kingdoms; i++) {
 			players[i] = new PlayerGraphics(iSize, jSize, kingdoms, i + 1);
 		}
-		spectators = new Spectator[] { new SpectatorGraphics(iSize, jSize, kingdoms) };
+		spectators = mailboxes(new Spectator[] { new SpectatorGraphics(iSize, jSize, kingdoms) });
+	}
+
+	/**
+	 * Puts every spectator behind a mailbox, so a slow spectator never holds up
+	 * the cycle. Swing spectators are updated on the event dispatch thread.
+	 * 
+	 * @param spectators
+	 *            - the spectators
+	 * @return a new array with the mailboxes
+	 */
+	private static Spectator[] mailboxes(Spectator[] spectators) {
+		Spectator[] result = new Spectator[spectators.length];
+		for (int k = 0; k < spectators.length; k++) {
+			if (spectators[k] instanceof SpectatorMailbox) {
+				result[k] = spectators[k];
+			} else if (spectators[k] instanceof SpectatorGraphics) {
+				result[k] = new SpectatorMailbox(spectators[k], SwingUtilities::invokeLater);
+			} else {
+				result[k] = new SpectatorMailbox(spectators[k]);
+			}
+		}
+		return result;
 	}
 
 	/**
 	 * Makes each player's next move in a random order.
 	 */
 	private void step() {
-		int[] sequence = g.getSequence();
+		int[] sequence = g.getSequence(count);
 		for (int x = 0; x < kingdoms; x++) {
 			int i = sequence[x];
+			metrics.queued(i, moves[i].size());
 			if (!moves[i].isEmpty()) {
 				Move m = moves[i].poll();
 //				System.out.println("(" + m.startI + "," + m.startJ + ") to (" + m.endI + "," + m.endJ + ")");
-				if (!makeMove(m, i) || board[m.endI][m.endJ] instanceof Occupiable
-						&& ((Occupiable) board[m.endI][m.endJ]).getType() != i + 1) {
+				boolean made = makeMove(m, i);
+				boolean failed = !made || board.getOwner(m.endI * jSize + m.endJ) != i + 1;
+				byte outcome = !made ? ReplayWriter.REJECTED : failed ? ReplayWriter.FAILED : ReplayWriter.APPLIED;
+				metrics.move(i, outcome);
+				if (replay != null) {
+					replay.move(i + 1, m, outcome);
+				}
+				if (failed) {
 					players[i].failedMove(m);
 					moves[i].clear();
 				}
@@ -272,172 +726,432 @@ public class GameBoard {
 	 * @return <code> true </code> if successful
 	 */
 	private boolean makeMove(Move m, int playerIndex) {
-		if (isValid(m) && board[m.startI][m.startJ] instanceof Occupiable
-				&& ((Occupiable) board[m.startI][m.startJ]).getType() == playerIndex + 1
-				&& board[m.endI][m.endJ] instanceof Occupiable) {
-			Occupiable from = ((Occupiable) board[m.startI][m.startJ]);
-			Occupiable to = ((Occupiable) board[m.endI][m.endJ]);
-			boolean king = to instanceof City && ((City) to).isKing();
-			int previous = to.getType();
-			if (m.all) {
-				to.attacked(from.getType(), from.move());
-			} else {
-				to.attacked(from.getType(), from.split());
+		int captured = board.makeMove(m, playerIndex + 1);
+		if (captured > 0) {
+			dead[captured - 1] = true;
+			keyframes[captured - 1] = true;
+			convert(captured, playerIndex + 1);
+		}
+		return captured >= 0;
+	}
+
+	/**
+	 * Converts land belonging to a player when the king is captured.
+	 * 
+	 * @param before
+	 *            - the previous index
+	 * @param after
+	 *            - the new index
+	 */
+	private void convert(int before, int after) {
+		board.convert(before, after);
+	}
+
+	/**
+	 * Updates each of the players with their own view of the board. With a pool
+	 * every player's view is built and delivered as its own task, and the cycle
+	 * waits for all of them before it returns.
+	 */
+	private void updatePlayers() {
+		Arrays.fill(building, 0);
+		updateView(0, deltas[0]);
+		fresh = false;
+		if (deadline > 0) {
+			updateIsolated();
+		} else if (pool == null) {
+			for (int i = 0; i < kingdoms; i++) {
+				updatePlayer(i);
 			}
-			if (to.getType() != previous && king) {
-				dead[previous - 1] = true;
-				convert(previous, from.getType());
+			updateSpectators();
+		} else {
+			for (ForkJoinTask<?> t : tasks) {
+				t.reinitialize();
 			}
-			return true;
+			fanOut.reinitialize();
+			pool.invoke(fanOut);
+		}
+		board.clearChanges();
+		vision.clearFlips();
+		if (debug) {
+			verifyViews();
+		}
+		spectatorKeyframe = false;
+	}
+
+	/**
+	 * Delivers every player's view on the player's own thread and waits for the
+	 * updates until the deadline. A player that is still busy with an earlier
+	 * update is skipped, and is sent a keyframe once it is done. The deltas are
+	 * built on the calling thread, and nothing a busy player reads is changed.
+	 */
+	private void updateIsolated() {
+		long end = System.nanoTime() + deadline;
+		for (int i = 0; i < kingdoms; i++) {
+			int p = i + 1;
+			if (pending[i] != null && !pending[i].isDone()) {
+				metrics.missed(i);
+				keyframes[i] = true;
+				legacy[p] = null;
+				sent[i] = false;
+				continue;
+			}
+			updateView(p, deltas[p]);
+			if (keyframes[i] || wants[i]) {
+				keyframes[i] = false;
+				legacy[p] = null;
+				fill(deltas[p], p);
+			}
+			Viewed[][] matrix = players[i] instanceof DeltaSpectator ? null : legacyView(p);
+			int[][] army = armyState;
+			int index = i;
+			pending[i] = threads[i].submit(() -> deliver(index, matrix, army));
+			sent[i] = true;
+		}
+		updateSpectators();
+		for (int i = 0; i < kingdoms; i++) {
+			if (!sent[i]) {
+				continue;
+			}
+			try {
+				pending[i].get(Math.max(end - System.nanoTime(), 0), TimeUnit.NANOSECONDS);
+			} catch (TimeoutException e) {
+				if (!pending[i].isDone()) {
+					metrics.missed(i);
+				}
+			} catch (ExecutionException e) {
+				metrics.missed(i);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Delivers a prepared view to a player on the player's own thread.
+	 * 
+	 * @param i
+	 *            - the index of the player
+	 * @param matrix
+	 *            - the view as <code>Viewed</code> objects for a player that does
+	 *            not take deltas
+	 * @param army
+	 *            - the army state of the cycle
+	 */
+	private void deliver(int i, Viewed[][] matrix, int[][] army) {
+		if (matrix == null) {
+			DeltaSpectator d = (DeltaSpectator) players[i];
+			PlayerUpdateEvent event = start(i, deltas[i + 1].isKeyframe());
+			d.update(deltas[i + 1], army);
+			finish(i, event);
+			wants[i] = d.wantsKeyframe();
 		} else {
-			return false;
+			PlayerUpdateEvent event = start(i, false);
+			players[i].update(matrix, army);
+			finish(i, event);
 		}
 	}
 
 	/**
-	 * Checks whether a move is in bounds and is exactly one step.
+	 * Builds the view of a player and delivers it.
 	 * 
-	 * @param m
-	 *            - the move to be checked
-	 * @return <code> true </code> if the move is valid based on the parameters
+	 * @param i
+	 *            - the index of the player
 	 */
-	private boolean isValid(Move m) {
-		return m.startI >= 0 && m.startI < iSize && m.startJ >= 0 && m.startJ < jSize && m.endI >= 0 && m.endI < iSize
-				&& m.endJ >= 0 && m.endJ < jSize && Math.abs(m.startI - m.endI) + Math.abs(m.startJ - m.endJ) == 1;
+	private void updatePlayer(int i) {
+		int p = dead[i] ? 0 : i + 1;
+		if (p > 0) {
+			updateView(p, deltas[p]);
+		}
+		if (players[i] instanceof DeltaSpectator) {
+			DeltaSpectator d = (DeltaSpectator) players[i];
+			ViewDelta frame = deltas[p];
+			if (keyframes[i] || d.wantsKeyframe()) {
+				keyframes[i] = false;
+				frame = keyframe(p);
+			}
+			PlayerUpdateEvent event = start(i, frame.isKeyframe());
+			d.update(frame, armyState);
+			finish(i, event);
+		} else {
+			Viewed[][] matrix = legacyView(p);
+			PlayerUpdateEvent event = start(i, false);
+			players[i].update(matrix, armyState);
+			finish(i, event);
+		}
 	}
 
 	/**
-	 * Converts land belonging to a player when the king is captured.
+	 * Starts timing the update of a player.
 	 * 
-	 * @param before
-	 *            - the previous index
-	 * @param after
-	 *            - the new index
+	 * @param i
+	 *            - the index of the player
+	 * @param keyframe
+	 *            - <code>true</code> if the player is sent a keyframe
+	 * @return the flight recorder event of the update
 	 */
-	private void convert(int before, int after) {
-		for (Space[] r : board) {
-			for (Space s : r) {
-				if (s instanceof Occupiable && ((Occupiable) s).getType() == before) {
-					((Occupiable) s).updateType(after);
+	private PlayerUpdateEvent start(int i, boolean keyframe) {
+		PlayerUpdateEvent event = new PlayerUpdateEvent();
+		event.player = i + 1;
+		event.count = count;
+		event.keyframe = keyframe;
+		event.begin();
+		updateStarts[i] = System.nanoTime();
+		return event;
+	}
+
+	/**
+	 * Finishes timing the update of a player.
+	 * 
+	 * @param i
+	 *            - the index of the player
+	 * @param event
+	 *            - the flight recorder event of the update
+	 */
+	private void finish(int i, PlayerUpdateEvent event) {
+		metrics.updated(i, System.nanoTime() - updateStarts[i]);
+		event.commit();
+	}
+
+	/**
+	 * Delivers the view of everything to the spectators.
+	 */
+	private void updateSpectators() {
+		for (Spectator s : spectators) {
+			if (s instanceof DeltaSpectator) {
+				DeltaSpectator d = (DeltaSpectator) s;
+				if (spectatorKeyframe || d.wantsKeyframe()) {
+					d.update(keyframe(0), armyState);
+				} else {
+					d.update(deltas[0], armyState);
 				}
+			} else {
+				s.update(legacyView(0), armyState);
 			}
 		}
 	}
 
 	/**
-	 * Updates each of the players with their own view of the board.
+	 * Returns a keyframe with every cell of a view. A living player's delta is
+	 * refilled as its keyframe, since it is not needed once the keyframe is sent.
+	 * The keyframe of everything is shared and only filled once per cycle.
+	 * 
+	 * @param p
+	 *            - the player number of the view, 0 for everything
+	 * @return the keyframe
 	 */
-	private void updatePlayers() {
-		Viewed[][] everything = playerView(0);
-		for (int i = 0; i < kingdoms; i++) {
-			if (!dead[i]) {
-				players[i].update(playerView(i + 1), armyState);
-			} else {
-				players[i].update(everything, armyState);
+	private ViewDelta keyframe(int p) {
+		if (p > 0) {
+			fill(deltas[p], p);
+			return deltas[p];
+		}
+		synchronized (keyframe) {
+			if (!fresh) {
+				fill(keyframe, 0);
+				fresh = true;
 			}
 		}
-		for (Spectator s : spectators) {
-			s.update(everything, armyState);
+		return keyframe;
+	}
+
+	/**
+	 * Fills a delta with every cell of a view.
+	 * 
+	 * @param delta
+	 *            - the delta to be filled
+	 * @param p
+	 *            - the player number of the view, 0 for everything
+	 */
+	private void fill(ViewDelta delta, int p) {
+		delta.clear(true);
+		for (int x = 0; x < iSize * jSize; x++) {
+			delta.add(x, view(p, x));
 		}
 	}
 
 	/**
-	 * Generates the view for a player.
+	 * Returns the view of a cell. Only the view of everything is kept; a living
+	 * player sees a cell as it is if the cell is visible and as unknown
+	 * otherwise, which never changes for a cell. This keeps the memory of the
+	 * views independent of the number of players.
 	 * 
 	 * @param p
-	 *            - the player number
-	 * @return a matrix of <code>Viewed</code> objects
+	 *            - the player number of the view, 0 for everything
+	 * @param x
+	 *            - the index of the cell
+	 * @return the packed view of the cell
 	 */
-	private Viewed[][] playerView(int p) {
-		Viewed[][] result = new Viewed[iSize][jSize];
-		if (p != 0) {
-			for (int i = 0; i < iSize; i++) {
-				for (int j = 0; j < jSize; j++) {
-					if (board[i][j] instanceof Occupiable && ((Occupiable) board[i][j]).getType() == p) {
-						for (int iShift = -1; iShift <= 1; iShift++) {
-							for (int jShift = -1; jShift <= 1; jShift++) {
-								if (i + iShift >= 0 && i + iShift < iSize && j + jShift >= 0 && j + jShift < jSize
-										&& result[i + iShift][j + jShift] == null) {
-									Space current = board[i + iShift][j + jShift];
-									if (current instanceof Occupiable) {
-										if (current instanceof City) {
-											City c = (City) current;
-											if (c.isKing()) {
-												result[i + iShift][j + jShift] = new Viewed(true, false, c.getType(),
-														c.getTroops(), false, true);
-											} else {
-												result[i + iShift][j + jShift] = new Viewed(true, false, c.getType(),
-														c.getTroops(), true, false);
-											}
-										} else {
-											Territory c = (Territory) current;
-											result[i + iShift][j + jShift] = new Viewed(true, false, c.getType(),
-													c.getTroops(), false, false);
-										}
-									} else {
-										result[i + iShift][j + jShift] = new Viewed(true, true, 0, 0, false, false);
-									}
-								}
-							}
-						}
-					}
+	private long view(int p, int x) {
+		return p == 0 || dead[p - 1] || vision.isVisible(p, x) ? all[x] : board.unknown(x);
+	}
+
+	/**
+	 * Returns a view as <code>Viewed</code> objects for players and spectators
+	 * that do not take deltas. The matrix is built on first use and then kept up
+	 * to date from the deltas, so only changed cells are allocated. The caller
+	 * gets a copy of the rows, since the kept matrix changes with the next
+	 * cycle while the viewer may still be reading or holding it. Each view has
+	 * its own lock, since the view of everything is shared by the spectators
+	 * and the dead players, which may ask for it on different pool threads.
+	 * 
+	 * @param p
+	 *            - the player number of the view, 0 for everything
+	 * @return a new matrix of <code>Viewed</code> objects
+	 */
+	Viewed[][] legacyView(int p) {
+		synchronized (legacyLocks[p]) {
+			if (legacy[p] == null) {
+				legacy[p] = new Viewed[iSize][jSize];
+				for (int x = 0; x < iSize * jSize; x++) {
+					legacy[p][x / jSize][x % jSize] = PackedView.toViewed(view(p, x));
 				}
 			}
+			Viewed[][] copy = new Viewed[iSize][];
 			for (int i = 0; i < iSize; i++) {
-				for (int j = 0; j < jSize; j++) {
-					if (result[i][j] == null) {
-						result[i][j] = new Viewed(false, board[i][j].getMountain(), 0, 0, false, false);
-					}
-				}
+				copy[i] = legacy[p][i].clone();
+			}
+			return copy;
+		}
+	}
+
+	/**
+	 * Rebuilds the view of every player from scratch.
+	 */
+	void rebuildViews() {
+		for (int x = 0; x < iSize * jSize; x++) {
+			all[x] = board.known(x);
+		}
+		for (int p = 0; p <= kingdoms; p++) {
+			legacy[p] = null;
+		}
+		for (int i = 0; i < kingdoms; i++) {
+			keyframes[i] = true;
+		}
+		spectatorKeyframe = true;
+		board.clearChanges();
+		vision.clearFlips();
+	}
+
+	/**
+	 * Fills the delta of a view with the cells that changed contents or
+	 * visibility since the last cycle. The view of everything must be updated
+	 * first, since player views are read from it.
+	 * 
+	 * @param p
+	 *            - the player number of the view, 0 for everything
+	 * @param delta
+	 *            - the delta to be filled
+	 */
+	private void updateView(int p, ViewDelta delta) {
+		long start = System.nanoTime();
+		int[] changed = board.getChanged();
+		int changes = board.getChanges();
+		delta.clear(false);
+		if (p == 0) {
+			for (int k = 0; k < changes; k++) {
+				int x = changed[k];
+				all[x] = board.known(x);
+				delta.add(x, all[x]);
+			}
+		} else if (dead[p - 1]) {
+			for (int k = 0; k < changes; k++) {
+				int x = changed[k];
+				delta.add(x, all[x]);
 			}
 		} else {
-			for (int i = 0; i < iSize; i++) {
-				for (int j = 0; j < jSize; j++) {
-					if (board[i][j] instanceof Occupiable) {
-						result[i][j] = new Viewed(true, false, ((Occupiable) board[i][j]).getType(),
-								((Occupiable) board[i][j]).getTroops(),
-								(board[i][j] instanceof City && !((City) board[i][j]).isKing()),
-								(board[i][j] instanceof City && ((City) board[i][j]).isKing()));
-					} else {
-						result[i][j] = new Viewed(true, true, 0, 0, false, false);
+			for (int k = 0; k < changes; k++) {
+				int x = changed[k];
+				if (vision.isVisible(p, x)) {
+					delta.add(x, all[x]);
+				}
+			}
+			int[] flipped = vision.getFlipped(p);
+			int flips = vision.getFlips(p);
+			for (int k = 0; k < flips; k++) {
+				int x = flipped[k];
+				if (vision.isVisible(p, x)) {
+					if (!board.isChanged(x)) {
+						delta.add(x, all[x]);
 					}
+				} else {
+					delta.add(x, board.unknown(x));
 				}
 			}
 		}
-		return result;
+		updateLegacy(p, delta);
+		building[p] = System.nanoTime() - start;
 	}
 
 	/**
-	 * Reinforces all valid troops in a cycle.
+	 * Applies the delta of a view to its <code>Viewed</code> matrix, if one was
+	 * built.
+	 * 
+	 * @param p
+	 *            - the player number of the view, 0 for everything
+	 * @param delta
+	 *            - the delta of the view
 	 */
-	private void reinforceAll() {
-		for (int i = 0; i < iSize; i++) {
-			for (int j = 0; j < jSize; j++) {
-				if (board[i][j] instanceof Occupiable) {
-					if (count % 20 == 0 || (board[i][j] instanceof City && count % 2 == 0)) {
-						((Occupiable) board[i][j]).reinforce();
-					}
+	private void updateLegacy(int p, ViewDelta delta) {
+		synchronized (legacyLocks[p]) {
+			if (legacy[p] != null) {
+				for (int k = 0; k < delta.size(); k++) {
+					legacy[p][delta.getI(k)][delta.getJ(k)] = delta.get(k);
 				}
 			}
 		}
 	}
 
 	/**
-	 * Recounts the state of each player and updates armyState.
+	 * Checks the cached view of everything against the board, and the
+	 * <code>Viewed</code> matrices of the living players against their views.
+	 * 
+	 * @throws IllegalStateException
+	 *             if a cached view is wrong
 	 */
-	private void updateArmyState() {
-		int[][] newState = new int[kingdoms][2];
-		for (int i = 0; i < iSize; i++) {
-			for (int j = 0; j < jSize; j++) {
-				if (board[i][j] instanceof Occupiable) {
-					int type = ((Occupiable) board[i][j]).getType();
-					if (type != 0) {
-						newState[type - 1][0]++;
-						newState[type - 1][1] += ((Occupiable) board[i][j]).getTroops();
+	private void verifyViews() {
+		for (int x = 0; x < iSize * jSize; x++) {
+			if (all[x] != board.known(x)) {
+				throw new IllegalStateException("View of everything is wrong at (" + x / jSize + "," + x % jSize + ")");
+			}
+		}
+		for (int p = 0; p <= kingdoms; p++) {
+			if (legacy[p] != null && (p == 0 || !dead[p - 1])) {
+				for (int x = 0; x < iSize * jSize; x++) {
+					if (PackedView.pack(legacy[p][x / jSize][x % jSize]) != view(p, x)) {
+						throw new IllegalStateException(
+								"View of player " + p + " is wrong at (" + x / jSize + "," + x % jSize + ")");
 					}
 				}
 			}
 		}
-		armyState = newState;
+	}
+
+	/**
+	 * Reinforces all valid troops in a cycle.
+	 */
+	private void reinforceAll() {
+		board.reinforceAll(count);
+	}
+
+	/**
+	 * Updates armyState from the running totals of the board. The totals are
+	 * copied into a new matrix, since the board changes them in place while
+	 * the players may still be reading or keeping the matrix of a cycle.
+	 */
+	void updateArmyState() {
+		int[][] totals = board.getArmyState();
+		armyState = new int[kingdoms][];
+		for (int i = 0; i < kingdoms; i++) {
+			armyState[i] = totals[i].clone();
+		}
+		if (debug) {
+			board.verify();
+			for (int i = 0; i < kingdoms; i++) {
+				if (dead[i] == (board.getLand(i + 1) > 0)) {
+					throw new IllegalStateException("Player " + (i + 1) + " owns " + board.getLand(i + 1)
+							+ " cells but is " + (dead[i] ? "dead" : "alive"));
+				}
+			}
+		}
 	}
 }
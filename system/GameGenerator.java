@@ -1,10 +1,10 @@
 package system;
 
-import java.util.Comparator;
-import java.util.HashSet;
-import java.util.PriorityQueue;
-import java.util.Random;
-import java.util.Set;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * A game board generator.
@@ -12,7 +12,31 @@ import java.util.Set;
  * @author Axel Li
  */
 public class GameGenerator {
-	private Random r;
+	/**
+	 * What to do with regions that cannot be reached from the largest region of
+	 * passable cells.
+	 */
+	public enum Connectivity {
+		/**
+		 * Leave them, kings are still only placed on the largest region.
+		 */
+		NONE,
+		/**
+		 * Fill them with mountains.
+		 */
+		FILL,
+		/**
+		 * Reject the grid.
+		 */
+		REJECT
+	}
+
+	private final long seed;
+	private long attemptSeed;
+	private long nextAttempt;
+	private long sequenceSeed;
+	private SplittableRandom cityRandom;
+	private SplittableRandom[] playerRandom;
 	private int i;
 	private int j;
 	private int mountains;
@@ -23,6 +47,9 @@ public class GameGenerator {
 	private int[][] grid;
 	private int[][] kings;
 	private int[] playerSequence;
+	private Connectivity connectivity = Connectivity.NONE;
+	private ForkJoinPool pool;
+	private Workspace workspace;
 
 	/**
 	 * Creates a new game board generator.
@@ -44,7 +71,42 @@ public class GameGenerator {
 	 */
 	public GameGenerator(int i, int j, double proportionMountains, double proportionCities, int kingdoms,
 			int minMazeDist, int minManhattanDist) {
-		r = new Random();
+		this(i, j, proportionMountains, proportionCities, kingdoms, minMazeDist, minManhattanDist,
+				new SplittableRandom().nextLong());
+	}
+
+	/**
+	 * Creates a new game board generator whose random streams are derived from a
+	 * seed.
+	 * 
+	 * @param i
+	 *            - the i size of the board
+	 * @param j
+	 *            - the j size of the board
+	 * @param proportionMountains
+	 *            - the proportion of mountains
+	 * @param proportionCities
+	 *            - the proportion of cities
+	 * @param kingdoms
+	 *            - the number of kingdoms
+	 * @param minMazeDist
+	 *            - the minimum maze distance between kingdoms
+	 * @param minManhattanDist
+	 *            - the minimum manhattan distance between kingdoms
+	 * @param seed
+	 *            - the seed of the game
+	 */
+	public GameGenerator(int i, int j, double proportionMountains, double proportionCities, int kingdoms,
+			int minMazeDist, int minManhattanDist, long seed) {
+		this.seed = seed;
+		SplittableRandom root = new SplittableRandom(seed);
+		attemptSeed = root.split().nextLong();
+		sequenceSeed = root.nextLong();
+		cityRandom = root.split();
+		playerRandom = new SplittableRandom[kingdoms];
+		for (int x = 0; x < kingdoms; x++) {
+			playerRandom[x] = root.split();
+		}
 		this.i = i;
 		this.j = j;
 		this.mountains = (int) (i * j * proportionMountains);
@@ -58,6 +120,34 @@ public class GameGenerator {
 		initSequence();
 	}
 
+	/**
+	 * Creates a generator with the same settings whose random streams are
+	 * derived from another seed.
+	 * 
+	 * @param seed
+	 *            - the seed of the new generator
+	 * @return the new generator
+	 */
+	GameGenerator withSeed(long seed) {
+		GameGenerator g = new GameGenerator(i, j, 0, 0, kingdoms, minMazeDist, minManhattanDist, seed);
+		g.mountains = mountains;
+		g.cities = cities;
+		g.connectivity = connectivity;
+		return g;
+	}
+
+	/**
+	 * Describes the settings of the generator. Generators with the same key
+	 * create grids with the same rules.
+	 * 
+	 * @return the size, the number of mountains, cities and kingdoms, the
+	 *         minimum distances and the connectivity
+	 */
+	String getKey() {
+		return i + "x" + j + " mountains " + mountains + " cities " + cities + " kingdoms " + kingdoms + " maze "
+				+ minMazeDist + " manhattan " + minManhattanDist + " " + connectivity;
+	}
+
 	/**
 	 * Returns the currently generated grid.
 	 * 
@@ -70,9 +160,14 @@ public class GameGenerator {
 	/**
 	 * Returns a randomly generated a player sequence.
 	 * 
-	 * @return an array of <code>int</code> with numbers from
+	 * @param count
+	 *            - the number of the cycle
+	 * @return an array of <code>int</code> with numbers from 0 to kingdoms - 1,
+	 *         which only depends on the seed and the count
 	 */
-	public int[] getSequence() {
+	public int[] getSequence(int count) {
+		SplittableRandom r = new SplittableRandom(mix(sequenceSeed ^ count * 0x9E3779B97F4A7C15L));
+		initSequence();
 		for (int i = 0; i < playerSequence.length; i++) {
 			int x = i + r.nextInt(playerSequence.length - i);
 			int hold = playerSequence[x];
@@ -82,6 +177,19 @@ public class GameGenerator {
 		return playerSequence;
 	}
 
+	/**
+	 * Scrambles the bits of a value so that nearby values give unrelated seeds.
+	 * 
+	 * @param z
+	 *            - the value
+	 * @return the scrambled value
+	 */
+	private static long mix(long z) {
+		z = (z ^ (z >>> 33)) * 0xFF51AFD7ED558CCDL;
+		z = (z ^ (z >>> 33)) * 0xC4CEB9FE1A85EC53L;
+		return z ^ (z >>> 33);
+	}
+
 	/**
 	 * Returns the location of the kings.
 	 * 
@@ -97,7 +205,54 @@ public class GameGenerator {
 	 * @return a number between 40 and 45, inclusive
 	 */
 	public int getRandomCity() {
-		return r.nextInt(6) + 40;
+		return cityRandom.nextInt(6) + 40;
+	}
+
+	/**
+	 * Returns the seed of the game.
+	 * 
+	 * @return the seed all random streams are derived from
+	 */
+	public long getSeed() {
+		return seed;
+	}
+
+	/**
+	 * Returns the random stream of a player.
+	 * 
+	 * @param player
+	 *            - the player number
+	 * @return an independent random stream for the player
+	 */
+	public SplittableRandom getPlayerRandom(int player) {
+		return playerRandom[player - 1];
+	}
+
+	/**
+	 * Checks whether the settings can ever be met. Only limits that follow from
+	 * the size of the board are checked, so settings that pass may still be too
+	 * tight for a particular grid.
+	 * 
+	 * @return why no grid can have valid kings, <code>null</code> if the
+	 *         settings may be possible
+	 */
+	public String getProblem() {
+		int land = i * j - mountains - cities;
+		if (land < kingdoms) {
+			return kingdoms + " kings do not fit on " + land + " cells of land";
+		}
+		if (kingdoms > 1 && minManhattanDist > 0) {
+			long side = (i + j - 2) / minManhattanDist + 1;
+			if (side * side < kingdoms) {
+				return "At most " + side * side + " kings fit on a " + i + "x" + j + " board at a manhattan distance of "
+						+ minManhattanDist + ", not " + kingdoms;
+			}
+		}
+		if (kingdoms > 1 && minMazeDist > 0 && (long) kingdoms * ((minMazeDist - 1) / 2 + 1) > land) {
+			return kingdoms + " kings at a maze distance of " + minMazeDist + " need more than " + land
+					+ " cells of land";
+		}
+		return null;
 	}
 
 	/**
@@ -111,46 +266,93 @@ public class GameGenerator {
 	 * @return <code> true </code> if successful
 	 */
 	public boolean create(int attempts, boolean print) {
-		boolean unsuccessful = true;
-		int[][] newKings = new int[kingdoms][2];
-		int[][] newBoard = new int[i][j];
-		while (attempts > 0 && unsuccessful) {
-			unsuccessful = false;
-			attempts--;
-			newBoard = generate(mountains, cities);
-			for (int x = 0; x < kingdoms; x++) {
-				boolean duplicate = true;
-				while (duplicate) {
-					duplicate = false;
-					newKings[x] = new int[] { r.nextInt(i), r.nextInt(j) };
-					if (newBoard[newKings[x][0]][newKings[x][1]] != 0) {
-						duplicate = true;
-					} else {
-						for (int y = 0; y < x; y++) {
-							if (newKings[x][0] == newKings[y][0] && newKings[x][1] == newKings[y][1]) {
-								duplicate = true;
-							}
-						}
-					}
-				}
-			}
-			for (int x = 0; x < newKings.length; x++) {
-				for (int y = 0; y < x; y++) {
-					int astar = AStar(newBoard, newKings[x][0], newKings[x][1], newKings[y][0], newKings[y][1]);
-					int manhattan = heuristic(newKings[x][0], newKings[x][1], newKings[y][0], newKings[y][1]);
-					if (astar < minMazeDist || manhattan < minManhattanDist) {
-						unsuccessful = true;
-						break;
-					}
+		return create(attempts, 0, print);
+	}
+
+	/**
+	 * Sets what happens to regions of land and cities that are cut off from the
+	 * largest region by mountains.
+	 * 
+	 * @param connectivity
+	 *            - <code>NONE</code> to leave them without kings,
+	 *            <code>FILL</code> to turn them into mountains or
+	 *            <code>REJECT</code> to try another grid
+	 */
+	public void setConnectivity(Connectivity connectivity) {
+		this.connectivity = connectivity;
+	}
+
+	/**
+	 * Sets the pool that generates candidate grids in parallel. Every attempt
+	 * has its own random stream derived from the seed and the number of the
+	 * attempt, and the valid attempt with the lowest number wins, so without a
+	 * time limit the grid only depends on the seed and not on the pool. With a
+	 * time limit, how many attempts are made before it runs out depends on the
+	 * pool and the speed of the machine, so one run may find a grid where
+	 * another gives up; runs that must be reproducible pass a limit of 0.
+	 * 
+	 * @param pool
+	 *            - the pool, <code>null</code> to make one attempt after another
+	 *            on the calling thread
+	 */
+	public void setPool(ForkJoinPool pool) {
+		this.pool = pool;
+	}
+
+	/**
+	 * Attempts to create a new grid within a time limit. Each attempt places
+	 * mountains and cities at random and then places the kings directly, so an
+	 * attempt only fails if the grid has no room left for a king. Returns at once
+	 * if the settings can never be met.
+	 * 
+	 * With a pool, every worker claims the next attempt until one is valid.
+	 * Workers then only finish the attempts numbered below the best one found,
+	 * and the lowest valid attempt is used.
+	 * 
+	 * @param attempts
+	 *            - the number of attempts before giving up
+	 * @param timeLimit
+	 *            - the time in milliseconds after which no new attempt is
+	 *            started, 0 for no limit
+	 * @param print
+	 *            - prints out the generated grid if <code> true </code> and if
+	 *            successful
+	 * @return <code> true </code> if successful
+	 */
+	public boolean create(int attempts, int timeLimit, boolean print) {
+		long end = System.nanoTime() + timeLimit * 1_000_000L;
+		GenerateEvent event = new GenerateEvent();
+		event.begin();
+		Candidate best = new Candidate();
+		AtomicInteger claimed = new AtomicInteger();
+		AtomicInteger tried = new AtomicInteger();
+		if (getProblem() == null) {
+			int workers = pool == null ? 1 : Math.min(pool.getParallelism(), attempts);
+			if (workers <= 1) {
+				if (workspace == null) {
+					workspace = new Workspace();
 				}
-				if (unsuccessful) {
-					break;
+				search(workspace, best, claimed, tried, attempts, timeLimit, end);
+			} else {
+				ForkJoinTask<?>[] tasks = new ForkJoinTask<?>[workers];
+				for (int w = 0; w < workers; w++) {
+					tasks[w] = ForkJoinTask.adapt(() -> search(new Workspace(), best, claimed, tried, attempts,
+							timeLimit, end));
 				}
+				pool.invoke(ForkJoinTask.adapt(() -> ForkJoinTask.invokeAll(tasks)));
 			}
 		}
-		if (attempts > 0) {
-			kings = newKings;
-			grid = newBoard;
+		boolean successful = best.board != null;
+		nextAttempt += successful ? best.index + 1 : attempts;
+		event.iSize = i;
+		event.jSize = j;
+		event.kingdoms = kingdoms;
+		event.attempts = tried.get();
+		event.successful = successful;
+		event.commit();
+		if (successful) {
+			kings = best.kings;
+			grid = best.board;
 			addKings();
 			if (print) {
 				print();
@@ -161,6 +363,41 @@ public class GameGenerator {
 		}
 	}
 
+	/**
+	 * Makes attempts until a valid one is found, the attempts or the time run
+	 * out, or every attempt not yet claimed is numbered above the best one.
+	 * 
+	 * @param w
+	 *            - the workspace of the calling thread
+	 * @param best
+	 *            - the lowest valid attempt so far
+	 * @param claimed
+	 *            - the number of the next attempt to be claimed
+	 * @param tried
+	 *            - the number of attempts made
+	 * @param attempts
+	 *            - the number of attempts before giving up
+	 * @param timeLimit
+	 *            - the time in milliseconds after which no new attempt is
+	 *            started, 0 for no limit
+	 * @param end
+	 *            - the time at which the limit runs out
+	 */
+	private void search(Workspace w, Candidate best, AtomicInteger claimed, AtomicInteger tried, int attempts,
+			int timeLimit, long end) {
+		int k;
+		while ((timeLimit == 0 || System.nanoTime() < end) && (k = claimed.getAndIncrement()) < attempts
+				&& k < best.index) {
+			tried.incrementAndGet();
+			SplittableRandom r = new SplittableRandom(mix(attemptSeed ^ (nextAttempt + k) * 0x9E3779B97F4A7C15L));
+			int[][] board = w.generate(r);
+			int[][] newKings = new int[kingdoms][2];
+			if (board != null && w.placeKings(r, board, newKings)) {
+				best.offer(k, board, newKings);
+			}
+		}
+	}
+
 	/**
 	 * Adds the kings to the grid manually.
 	 */
@@ -192,32 +429,6 @@ public class GameGenerator {
 		}
 	}
 
-	/**
-	 * Generates a grid with mountains and cities randomly.
-	 * 
-	 * @return a matrix of <int> values with mountains as -1 and cities as -2
-	 */
-	private int[][] generate(int mountains, int cities) {
-		int[][] newGrid = new int[i][j];
-		while (mountains > 0) {
-			int nextI = r.nextInt(i);
-			int nextJ = r.nextInt(j);
-			if (newGrid[nextI][nextJ] == 0) {
-				newGrid[nextI][nextJ] = -1;
-				mountains--;
-			}
-		}
-		while (cities > 0) {
-			int nextI = r.nextInt(i);
-			int nextJ = r.nextInt(j);
-			if (newGrid[nextI][nextJ] == 0) {
-				newGrid[nextI][nextJ] = -2;
-				cities--;
-			}
-		}
-		return newGrid;
-	}
-
 	/**
 	 * Initializes the player sequence.
 	 */
@@ -228,60 +439,7 @@ public class GameGenerator {
 	}
 
 	/**
-	 * Conducts a A* search between two locations. The current implementation is
-	 * correct but is slower due to a small bug.
-	 * 
-	 * @param board
-	 *            - the board
-	 * @param iStart
-	 *            - the starting i position
-	 * @param jStart
-	 *            - the starting j position
-	 * @param iEnd
-	 *            - the ending i position
-	 * @param jEnd
-	 *            - the ending j position
-	 * @return the distance between the two locations, -1 if no path exists
-	 */
-	private int AStar(int[][] board, int iStart, int jStart, int iEnd, int jEnd) {
-		int I = board.length;
-		int J = board[0].length;
-		Set<Integer> visited = new HashSet<>();
-		PriorityQueue<Integer[]> pq = new PriorityQueue<>(new Comparator<Integer[]>() {
-			public int compare(Integer[] o1, Integer[] o2) {
-				return o1[2] + o1[3] - o2[2] - o2[3];
-			}
-		});
-		pq.offer(new Integer[] { iStart, jStart, 0, heuristic(iStart, jStart, iEnd, jEnd) });
-		while (!pq.isEmpty()) {
-			Integer[] current = pq.poll();
-			int i = current[0];
-			int j = current[1];
-			int steps = current[2];
-			if (i == iEnd && j == jEnd) {
-				return steps;
-			}
-			if (!visited.contains(i + j * I)) {
-				visited.add(i + j * I);
-				if (i + 1 < I && !visited.contains(i + 1 + j * I) && board[i + 1][j] == 0) {
-					pq.offer(new Integer[] { i + 1, j, steps + 1, heuristic(i + 1, j, iEnd, jEnd) });
-				}
-				if (i - 1 >= 0 && !visited.contains(i - 1 + j * I) && board[i - 1][j] == 0) {
-					pq.offer(new Integer[] { i - 1, j, steps + 1, heuristic(i - 1, j, iEnd, jEnd) });
-				}
-				if (j + 1 < J && !visited.contains(i + j * I + I) && board[i][j + 1] == 0) {
-					pq.offer(new Integer[] { i, j + 1, steps + 1, heuristic(i, j + 1, iEnd, jEnd) });
-				}
-				if (j - 1 >= 0 && !visited.contains(i + j * I - I) && board[i][j - 1] == 0) {
-					pq.offer(new Integer[] { i, j - 1, steps + 1, heuristic(i, j - 1, iEnd, jEnd) });
-				}
-			}
-		}
-		return -1;
-	}
-
-	/**
-	 * A simple manhattan distance heuristic for A* pathfinding
+	 * The manhattan distance between two locations
 	 * 
 	 * @param i1
 	 *            - starting i position
@@ -296,4 +454,364 @@ public class GameGenerator {
 	private int heuristic(int i1, int j1, int i2, int j2) {
 		return Math.abs(i1 - i2) + Math.abs(j1 - j2);
 	}
+
+	/**
+	 * The lowest valid attempt found by the workers.
+	 *
+	 * @author Axel Li
+	 */
+	private static class Candidate {
+		private volatile int index = Integer.MAX_VALUE;
+		private int[][] board;
+		private int[][] kings;
+
+		/**
+		 * Keeps a valid attempt if it is numbered below the best one so far.
+		 * 
+		 * @param k
+		 *            - the number of the attempt
+		 * @param board
+		 *            - the grid of the attempt
+		 * @param kings
+		 *            - the location of each king
+		 */
+		private synchronized void offer(int k, int[][] board, int[][] kings) {
+			if (k < index) {
+				this.board = board;
+				this.kings = kings;
+				index = k;
+			}
+		}
+	}
+
+	/**
+	 * The arrays a thread needs to generate grids, allocated once per thread and
+	 * reused across attempts.
+	 *
+	 * @author Axel Li
+	 */
+	private class Workspace {
+		private final int[] queue;
+		private final int[] visited;
+		private final int[] open;
+		private final int[] position;
+		private final int[] cells;
+		private final int[] parent;
+		private int openCount;
+		private int search;
+
+		/**
+		 * Creates a workspace for the size of the board.
+		 */
+		private Workspace() {
+			queue = new int[i * j];
+			visited = new int[i * j];
+			open = new int[i * j];
+			position = new int[i * j];
+			Arrays.fill(position, -1);
+			cells = new int[i * j];
+			parent = new int[i * j];
+		}
+
+		/**
+		 * Generates a grid with mountains and cities randomly. The cells are
+		 * chosen by a partial Fisher-Yates shuffle of the cell indexes, so every
+		 * draw hits a free cell however dense the grid is.
+		 * 
+		 * @param r
+		 *            - the random stream of the attempt
+		 * @return a matrix of <int> values with mountains as -1 and cities as -2,
+		 *         <code>null</code> if the grid was rejected for its connectivity
+		 */
+		private int[][] generate(SplittableRandom r) {
+			int[][] newGrid = new int[i][j];
+			for (int x = 0; x < i * j; x++) {
+				cells[x] = x;
+			}
+			for (int k = 0; k < mountains + cities; k++) {
+				int y = k + r.nextInt(i * j - k);
+				int x = cells[y];
+				cells[y] = cells[k];
+				cells[k] = x;
+				newGrid[x / j][x % j] = k < mountains ? -1 : -2;
+			}
+			if (connectivity != Connectivity.NONE && !connect(newGrid)) {
+				return null;
+			}
+			return newGrid;
+		}
+
+		/**
+		 * Finds the regions of land and cities with a union-find over the cells
+		 * in one pass, joining each cell with the cells above and to the left of
+		 * it. Every region but the largest is then filled with mountains, or the
+		 * grid is rejected.
+		 * 
+		 * @param grid
+		 *            - the grid
+		 * @return <code>false</code> if the grid has more than one region and is
+		 *         rejected
+		 */
+		private boolean connect(int[][] grid) {
+			for (int x = 0; x < i * j; x++) {
+				int xi = x / j;
+				int xj = x - xi * j;
+				if (grid[xi][xj] == -1) {
+					continue;
+				}
+				parent[x] = -1;
+				if (xi > 0 && grid[xi - 1][xj] != -1) {
+					union(x, x - j);
+				}
+				if (xj > 0 && grid[xi][xj - 1] != -1) {
+					union(x, x - 1);
+				}
+			}
+			int largest = -1;
+			for (int x = 0; x < i * j; x++) {
+				if (grid[x / j][x % j] != -1 && parent[x] < 0) {
+					if (largest >= 0 && connectivity == Connectivity.REJECT) {
+						return false;
+					}
+					if (largest < 0 || parent[x] < parent[largest]) {
+						largest = x;
+					}
+				}
+			}
+			if (connectivity == Connectivity.FILL) {
+				for (int x = 0; x < i * j; x++) {
+					if (grid[x / j][x % j] != -1 && find(x) != largest) {
+						grid[x / j][x % j] = -1;
+					}
+				}
+			}
+			return true;
+		}
+
+		/**
+		 * Finds the root of the region of a cell, halving the path on the way.
+		 * 
+		 * @param x
+		 *            - the index of the cell
+		 * @return the index of the root, whose parent is minus the size of the
+		 *         region
+		 */
+		private int find(int x) {
+			while (parent[x] >= 0) {
+				if (parent[parent[x]] >= 0) {
+					parent[x] = parent[parent[x]];
+				}
+				x = parent[x];
+			}
+			return x;
+		}
+
+		/**
+		 * Joins the regions of two cells, hanging the smaller under the larger.
+		 * 
+		 * @param x
+		 *            - the index of a cell
+		 * @param y
+		 *            - the index of another cell
+		 */
+		private void union(int x, int y) {
+			x = find(x);
+			y = find(y);
+			if (x != y) {
+				if (parent[x] > parent[y]) {
+					int hold = x;
+					x = y;
+					y = hold;
+				}
+				parent[x] += parent[y];
+				parent[y] = x;
+			}
+		}
+
+		/**
+		 * Places the kings on a grid so that every pair is valid by construction.
+		 * The kings are placed on the largest region of connected land, so they can
+		 * reach each other. Each king is drawn at random from the cells that are
+		 * still open. Drawn cells too close to an earlier king by manhattan distance
+		 * are closed, and once a king is placed every cell within the minimum maze
+		 * distance of it is closed.
+		 * 
+		 * @param r
+		 *            - the random stream of the attempt
+		 * @param board
+		 *            - the grid, where only land with value 0 can be crossed
+		 * @param kings
+		 *            - filled with the location of each king
+		 * @return <code>true</code> if every king was placed, <code>false</code> if
+		 *         the grid ran out of open cells
+		 */
+		private boolean placeKings(SplittableRandom r, int[][] board, int[][] kings) {
+			openLand(board);
+			try {
+				for (int x = 0; x < kings.length; x++) {
+					int cell = -1;
+					while (cell < 0 && openCount > 0) {
+						int c = open[r.nextInt(openCount)];
+						close(c);
+						if (farEnough(c, kings, x)) {
+							cell = c;
+						}
+					}
+					if (cell < 0) {
+						return false;
+					}
+					kings[x][0] = cell / j;
+					kings[x][1] = cell % j;
+					closeNear(board, cell);
+				}
+				return true;
+			} finally {
+				while (openCount > 0) {
+					close(open[openCount - 1]);
+				}
+			}
+		}
+
+		/**
+		 * Opens every cell of the largest region of connected land, found by a
+		 * breadth-first search from each cell not yet reached. This holds even
+		 * without a minimum maze distance, so that every king can reach the others.
+		 * 
+		 * @param board
+		 *            - the grid, where only land with value 0 can be crossed
+		 */
+		private void openLand(int[][] board) {
+			nextSearch();
+			int tail = 0;
+			int best = 0;
+			int bestStart = 0;
+			for (int x = 0; x < i * j; x++) {
+				if (board[x / j][x % j] == 0 && visited[x] != search) {
+					int start = tail;
+					visited[x] = search;
+					queue[tail++] = x;
+					for (int head = start; head < tail; head++) {
+						tail = expand(board, queue[head], tail);
+					}
+					if (tail - start > best) {
+						best = tail - start;
+						bestStart = start;
+					}
+				}
+			}
+			for (int k = 0; k < best; k++) {
+				open[k] = queue[bestStart + k];
+				position[open[k]] = k;
+			}
+			openCount = best;
+		}
+
+		/**
+		 * Closes every open cell within the minimum maze distance of a king with a
+		 * breadth-first search that stops at that distance. The king's own cell is
+		 * already closed.
+		 * 
+		 * @param board
+		 *            - the grid, where only land with value 0 can be crossed
+		 * @param king
+		 *            - the index of the king's cell
+		 */
+		private void closeNear(int[][] board, int king) {
+			nextSearch();
+			visited[king] = search;
+			queue[0] = king;
+			int head = 0;
+			int tail = 1;
+			for (int distance = 0; head < tail && distance < minMazeDist; distance++) {
+				for (int end = tail; head < end; head++) {
+					int x = queue[head];
+					if (position[x] >= 0) {
+						close(x);
+					}
+					tail = expand(board, x, tail);
+				}
+			}
+		}
+
+		/**
+		 * Adds the land next to a cell that was not reached yet to the queue of a
+		 * breadth-first search. Each cell enters the queue at most once per search.
+		 * 
+		 * @param board
+		 *            - the grid, where only land with value 0 can be crossed
+		 * @param x
+		 *            - the index of the cell
+		 * @param tail
+		 *            - the end of the queue
+		 * @return the new end of the queue
+		 */
+		private int expand(int[][] board, int x, int tail) {
+			int xi = x / j;
+			int xj = x - xi * j;
+			if (xi > 0 && board[xi - 1][xj] == 0 && visited[x - j] != search) {
+				visited[x - j] = search;
+				queue[tail++] = x - j;
+			}
+			if (xi < i - 1 && board[xi + 1][xj] == 0 && visited[x + j] != search) {
+				visited[x + j] = search;
+				queue[tail++] = x + j;
+			}
+			if (xj > 0 && board[xi][xj - 1] == 0 && visited[x - 1] != search) {
+				visited[x - 1] = search;
+				queue[tail++] = x - 1;
+			}
+			if (xj < j - 1 && board[xi][xj + 1] == 0 && visited[x + 1] != search) {
+				visited[x + 1] = search;
+				queue[tail++] = x + 1;
+			}
+			return tail;
+		}
+
+		/**
+		 * Starts a new search. Cells are marked with the number of the search
+		 * instead of being cleared between searches.
+		 */
+		private void nextSearch() {
+			if (++search == Integer.MAX_VALUE) {
+				Arrays.fill(visited, 0);
+				search = 1;
+			}
+		}
+
+		/**
+		 * Removes a cell from the open cells by moving the last open cell into its
+		 * place.
+		 * 
+		 * @param x
+		 *            - the index of an open cell
+		 */
+		private void close(int x) {
+			int k = position[x];
+			int last = open[--openCount];
+			open[k] = last;
+			position[last] = k;
+			position[x] = -1;
+		}
+
+		/**
+		 * Checks a cell against the minimum manhattan distance to the kings placed
+		 * so far.
+		 * 
+		 * @param x
+		 *            - the index of the cell
+		 * @param kings
+		 *            - the location of each king
+		 * @param placed
+		 *            - the number of kings placed so far
+		 * @return <code>true</code> if the cell is far enough from every king
+		 */
+		private boolean farEnough(int x, int[][] kings, int placed) {
+			for (int y = 0; y < placed; y++) {
+				if (heuristic(x / j, x % j, kings[y][0], kings[y][1]) < minManhattanDist) {
+					return false;
+				}
+			}
+			return true;
+		}
+	}
 }
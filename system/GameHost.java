@@ -0,0 +1,372 @@
+package system;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import players.AI;
+
+/**
+ * A host that runs many games at once on a small shared pool of worker
+ * threads. Every game has its own tick deadline; a dispatcher hands the game
+ * with the earliest deadline to the pool, so late games are served first. A
+ * game is only scheduled again after its cycle has finished, so no game ever
+ * runs on two threads at once.
+ *
+ * New games are only admitted while the host is below its game limit and the
+ * measured load of the running games leaves room on the pool.
+ *
+ * @author Axel Li
+ */
+public class GameHost implements AutoCloseable {
+	private final int threads;
+	private final ExecutorService workers;
+	private final Thread dispatcher;
+	private final PriorityQueue<HostedGame> waiting;
+	private final ReentrantLock lock;
+	private final Condition ready;
+	private final Set<HostedGame> games;
+	private final Histogram lateness;
+	private final Histogram duration;
+	private final AtomicLong admitted;
+	private final AtomicLong rejected;
+	private final AtomicLong completed;
+	private final AtomicLong failed;
+	private int maxGames = 256;
+	private double maxLoad = 0.75;
+	private boolean closed;
+
+	/**
+	 * Creates a host and starts its threads.
+	 *
+	 * @param threads
+	 *            - the number of worker threads
+	 */
+	public GameHost(int threads) {
+		if (threads <= 0) {
+			throw new IllegalArgumentException("Need at least one worker thread");
+		}
+		this.threads = threads;
+		AtomicLong ids = new AtomicLong();
+		workers = Executors.newFixedThreadPool(threads, r -> {
+			Thread t = new Thread(r, "game-host-" + ids.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		});
+		waiting = new PriorityQueue<>(Comparator.comparingLong(h -> h.due));
+		lock = new ReentrantLock();
+		ready = lock.newCondition();
+		games = ConcurrentHashMap.newKeySet();
+		lateness = new Histogram();
+		duration = new Histogram();
+		admitted = new AtomicLong();
+		rejected = new AtomicLong();
+		completed = new AtomicLong();
+		failed = new AtomicLong();
+		dispatcher = new Thread(this::dispatch, "game-host-dispatcher");
+		dispatcher.setDaemon(true);
+		dispatcher.start();
+	}
+
+	/**
+	 * Sets the most games that can run at once.
+	 *
+	 * @param maxGames
+	 *            - the game limit
+	 * @return <code>true</code> if successful
+	 */
+	public boolean setMaxGames(int maxGames) {
+		if (maxGames > 0) {
+			this.maxGames = maxGames;
+			return true;
+		} else {
+			return false;
+		}
+	}
+
+	/**
+	 * Sets the share of the worker threads that the running games may use before
+	 * new games are turned away.
+	 *
+	 * @param maxLoad
+	 *            - the share of each worker thread, between 0 and 1
+	 * @return <code>true</code> if successful
+	 */
+	public boolean setMaxLoad(double maxLoad) {
+		if (maxLoad > 0 && maxLoad <= 1) {
+			this.maxLoad = maxLoad;
+			return true;
+		} else {
+			return false;
+		}
+	}
+
+	/**
+	 * Starts running a game if there is room for it.
+	 *
+	 * @param game
+	 *            - the game board, which must not be used elsewhere while hosted
+	 * @param tick
+	 *            - the time between cycles in milliseconds
+	 * @param policy
+	 *            - what to do when the game's ticks fall behind
+	 * @param maxTicks
+	 *            - the number of ticks after which the game is stopped, 0 for no
+	 *            limit
+	 * @return the hosted game, <code>null</code> if it was not admitted
+	 */
+	public HostedGame host(GameBoard game, int tick, TickScheduler.Overrun policy, int maxTicks) {
+		long period = tick * 1_000_000L;
+		lock.lock();
+		try {
+			if (closed || games.size() >= maxGames || getLoad() + estimate(period) > threads * maxLoad) {
+				rejected.incrementAndGet();
+				return null;
+			}
+			HostedGame h = new HostedGame(game, new TickScheduler(period, policy, 2), maxTicks,
+					System.nanoTime() + period);
+			games.add(h);
+			admitted.incrementAndGet();
+			waiting.add(h);
+			ready.signal();
+			return h;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Estimates the load of a new game from the cycle times seen so far.
+	 *
+	 * @param period
+	 *            - the time between cycles of the new game in nanoseconds
+	 * @return the expected share of a worker thread
+	 */
+	private double estimate(long period) {
+		return duration.getMean() / period;
+	}
+
+	/**
+	 * Hands games to the workers in order of their deadlines.
+	 */
+	private void dispatch() {
+		lock.lock();
+		try {
+			while (!closed) {
+				HostedGame h = waiting.peek();
+				if (h == null) {
+					ready.await();
+					continue;
+				}
+				long wait = h.due - System.nanoTime();
+				if (wait > 0) {
+					ready.awaitNanos(wait);
+					continue;
+				}
+				waiting.poll();
+				workers.execute(() -> run(h));
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Runs one cycle of a game on a worker and schedules the next one.
+	 *
+	 * @param h
+	 *            - the game
+	 */
+	private void run(HostedGame h) {
+		long start = System.nanoTime();
+		boolean more;
+		try {
+			more = h.tick();
+		} catch (RuntimeException e) {
+			h.fail(e);
+			failed.incrementAndGet();
+			more = false;
+		}
+		long end = System.nanoTime();
+		lateness.record(start - h.due);
+		duration.record(end - start);
+		h.due = h.getScheduler().next(h.due, start, end);
+		if (more) {
+			lock.lock();
+			try {
+				if (!closed) {
+					waiting.add(h);
+					ready.signal();
+					return;
+				}
+			} finally {
+				lock.unlock();
+			}
+		}
+		games.remove(h);
+		completed.incrementAndGet();
+		h.finish();
+	}
+
+	/**
+	 * Returns the games that are running.
+	 *
+	 * @return a new list of the hosted games
+	 */
+	public List<HostedGame> getGames() {
+		return new ArrayList<>(games);
+	}
+
+	/**
+	 * Returns the measured load of the running games.
+	 *
+	 * @return the sum of each game's share of a worker thread
+	 */
+	public double getLoad() {
+		double load = 0;
+		for (HostedGame h : games) {
+			load += h.getScheduler().getDuration().getCount() > 0 ? h.getLoad()
+					: estimate(h.getScheduler().getPeriod());
+		}
+		return load;
+	}
+
+	/**
+	 * Returns how late cycles started over all games.
+	 *
+	 * @return the lateness histogram in nanoseconds
+	 */
+	public Histogram getLateness() {
+		return lateness;
+	}
+
+	/**
+	 * Returns how long cycles took over all games.
+	 *
+	 * @return the duration histogram in nanoseconds
+	 */
+	public Histogram getDuration() {
+		return duration;
+	}
+
+	/**
+	 * Returns the number of games that were admitted.
+	 *
+	 * @return the number of admitted games
+	 */
+	public long getAdmitted() {
+		return admitted.get();
+	}
+
+	/**
+	 * Returns the number of games that were turned away.
+	 *
+	 * @return the number of rejected games
+	 */
+	public long getRejected() {
+		return rejected.get();
+	}
+
+	/**
+	 * Returns the number of games that are no longer running.
+	 *
+	 * @return the number of finished games, including failed ones
+	 */
+	public long getCompleted() {
+		return completed.get();
+	}
+
+	/**
+	 * Returns the number of games that ended because a cycle failed.
+	 *
+	 * @return the number of failed games
+	 */
+	public long getFailed() {
+		return failed.get();
+	}
+
+	/**
+	 * Stops every game and the threads of the host.
+	 */
+	@Override
+	public void close() {
+		List<HostedGame> stopped;
+		lock.lock();
+		try {
+			closed = true;
+			stopped = new ArrayList<>(waiting);
+			waiting.clear();
+			ready.signal();
+		} finally {
+			lock.unlock();
+		}
+		for (HostedGame h : stopped) {
+			h.cancel();
+			games.remove(h);
+			completed.incrementAndGet();
+			h.finish();
+		}
+		workers.shutdown();
+		try {
+			workers.awaitTermination(1, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%d running, %d admitted, %d rejected, %d completed, %d failed, load %.2f/%d%n"
+				+ "lateness %s%ncycle %s", games.size(), getAdmitted(), getRejected(), getCompleted(), getFailed(),
+				getLoad(), threads, lateness, duration);
+	}
+
+	/**
+	 * Hosts games between AI players from the command line and prints the
+	 * statistics every second until they are over.
+	 *
+	 * @param args
+	 *            - games, threads, tick in milliseconds, kingdoms, maximum ticks
+	 *            and seed, each optional
+	 * @throws InterruptedException
+	 */
+	public static void main(String[] args) throws InterruptedException {
+		System.setProperty("java.awt.headless", "true");
+		int count = args.length > 0 ? Integer.parseInt(args[0]) : 100;
+		int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+		int tick = args.length > 2 ? Integer.parseInt(args[2]) : 500;
+		int kingdoms = args.length > 3 ? Integer.parseInt(args[3]) : 8;
+		int maxTicks = args.length > 4 ? Integer.parseInt(args[4]) : 1000;
+		SplittableRandom root = new SplittableRandom(args.length > 5 ? Long.parseLong(args[5]) : 0);
+		int maze = (int) Math.sqrt(8.0 / 5 * 18 * 18 / kingdoms);
+		try (GameHost host = new GameHost(threads)) {
+			host.setMaxGames(count);
+			for (int g = 0; g < count; g++) {
+				Player[] players = new Player[kingdoms];
+				for (int x = 0; x < kingdoms; x++) {
+					AI ai = new AI(18, 18, kingdoms, x + 1);
+					ai.setVerbose(false);
+					players[x] = ai;
+				}
+				host.host(new GameBoard(players, new Spectator[0], 18, 18, 0.12, 0.04, maze - 10 + kingdoms, maze,
+						root.nextLong()), tick, TickScheduler.Overrun.SKIP, maxTicks);
+			}
+			while (host.getCompleted() < host.getAdmitted()) {
+				Thread.sleep(1000);
+				System.out.println(host);
+			}
+		}
+	}
+}
@@ -0,0 +1,363 @@
+package system;
+
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * The counters and latency histograms of a game board: the time of each phase
+ * of a cycle and of map generation, and for each player the moves taken from
+ * its queue, the depth of its queue and the time of its updates. Can be
+ * registered as an MBean.
+ *
+ * @author Axel Li
+ */
+public class GameMetrics implements GameMetricsMXBean {
+	private static final int REINFORCE = 0;
+	private static final int STEP = 1;
+	private static final int ARMY_STATE = 2;
+	private static final int VIEWS = 3;
+	private static final int PLAYERS = 4;
+	private static final int CYCLE = 5;
+	private static final int GENERATE = 6;
+	private static final String[] PHASES = { "reinforce", "step", "armyState", "views", "players", "cycle",
+			"generate" };
+	private static final AtomicLong ids = new AtomicLong();
+	private final Histogram[] phases;
+	private final Histogram[] updates;
+	private final AtomicLong cycles;
+	private final AtomicLongArray accepted;
+	private final AtomicLongArray rejected;
+	private final AtomicLongArray failed;
+	private final AtomicIntegerArray depths;
+	private final AtomicIntegerArray maxDepths;
+	private final AtomicIntegerArray misses;
+	private ObjectName name;
+
+	/**
+	 * Creates empty metrics.
+	 *
+	 * @param kingdoms
+	 *            - the number of kingdoms
+	 */
+	public GameMetrics(int kingdoms) {
+		phases = new Histogram[PHASES.length];
+		for (int k = 0; k < PHASES.length; k++) {
+			phases[k] = new Histogram();
+		}
+		updates = new Histogram[kingdoms];
+		for (int k = 0; k < kingdoms; k++) {
+			updates[k] = new Histogram();
+		}
+		cycles = new AtomicLong();
+		accepted = new AtomicLongArray(kingdoms);
+		rejected = new AtomicLongArray(kingdoms);
+		failed = new AtomicLongArray(kingdoms);
+		depths = new AtomicIntegerArray(kingdoms);
+		maxDepths = new AtomicIntegerArray(kingdoms);
+		misses = new AtomicIntegerArray(kingdoms);
+	}
+
+	/**
+	 * Records the phases of a cycle.
+	 *
+	 * @param reinforce
+	 *            - the time spent reinforcing in nanoseconds
+	 * @param step
+	 *            - the time spent making moves
+	 * @param armyState
+	 *            - the time spent updating the army state
+	 * @param views
+	 *            - the time spent building views, summed over every view
+	 * @param players
+	 *            - the time spent building views and updating the players and
+	 *            spectators
+	 * @param cycle
+	 *            - the time of the whole cycle
+	 */
+	void cycle(long reinforce, long step, long armyState, long views, long players, long cycle) {
+		phases[REINFORCE].record(reinforce);
+		phases[STEP].record(step);
+		phases[ARMY_STATE].record(armyState);
+		phases[VIEWS].record(views);
+		phases[PLAYERS].record(players);
+		phases[CYCLE].record(cycle);
+		cycles.incrementAndGet();
+	}
+
+	/**
+	 * Records the generation of a map.
+	 *
+	 * @param nanos
+	 *            - the time spent in nanoseconds
+	 */
+	void generated(long nanos) {
+		phases[GENERATE].record(nanos);
+	}
+
+	/**
+	 * Records a move taken from a player's queue.
+	 *
+	 * @param i
+	 *            - the index of the player
+	 * @param outcome
+	 *            - <code>REJECTED</code>, <code>APPLIED</code> or
+	 *            <code>FAILED</code> from <code>ReplayWriter</code>
+	 */
+	void move(int i, byte outcome) {
+		if (outcome == ReplayWriter.APPLIED) {
+			accepted.incrementAndGet(i);
+		} else if (outcome == ReplayWriter.REJECTED) {
+			rejected.incrementAndGet(i);
+		} else {
+			failed.incrementAndGet(i);
+		}
+	}
+
+	/**
+	 * Records the depth of a player's queue at the start of a step.
+	 *
+	 * @param i
+	 *            - the index of the player
+	 * @param depth
+	 *            - the number of queued moves
+	 */
+	void queued(int i, int depth) {
+		depths.set(i, depth);
+		if (depth > maxDepths.get(i)) {
+			maxDepths.set(i, depth);
+		}
+	}
+
+	/**
+	 * Records an update of a player.
+	 *
+	 * @param i
+	 *            - the index of the player
+	 * @param nanos
+	 *            - the time of the update in nanoseconds
+	 */
+	void updated(int i, long nanos) {
+		updates[i].record(nanos);
+	}
+
+	/**
+	 * Records a missed deadline of a player.
+	 *
+	 * @param i
+	 *            - the index of the player
+	 */
+	void missed(int i) {
+		misses.incrementAndGet(i);
+	}
+
+	/**
+	 * Returns the histogram of a phase.
+	 *
+	 * @param phase
+	 *            - the name of the phase: reinforce, step, armyState, views,
+	 *            players, cycle or generate
+	 * @return the histogram in nanoseconds, <code>null</code> if there is no such
+	 *         phase
+	 */
+	public Histogram getPhase(String phase) {
+		for (int k = 0; k < PHASES.length; k++) {
+			if (PHASES[k].equals(phase)) {
+				return phases[k];
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Returns the histogram of a player's update times.
+	 *
+	 * @param p
+	 *            - the player number
+	 * @return the histogram in nanoseconds
+	 */
+	public Histogram getUpdates(int p) {
+		return updates[p - 1];
+	}
+
+	/**
+	 * Returns the number of cycles in which a player missed its deadline.
+	 *
+	 * @param p
+	 *            - the player number
+	 * @return the number of missed deadlines
+	 */
+	public int getMisses(int p) {
+		return misses.get(p - 1);
+	}
+
+	@Override
+	public long getCycles() {
+		return cycles.get();
+	}
+
+	@Override
+	public long getGenerated() {
+		return phases[GENERATE].getCount();
+	}
+
+	@Override
+	public Map<String, Double> getMeanMicros() {
+		Map<String, Double> result = new LinkedHashMap<>();
+		for (int k = 0; k < PHASES.length; k++) {
+			result.put(PHASES[k], phases[k].getMean() / 1e3);
+		}
+		return result;
+	}
+
+	@Override
+	public Map<String, Double> getP99Micros() {
+		Map<String, Double> result = new LinkedHashMap<>();
+		for (int k = 0; k < PHASES.length; k++) {
+			result.put(PHASES[k], phases[k].getPercentile(99) / 1e3);
+		}
+		return result;
+	}
+
+	@Override
+	public long[] getAcceptedMoves() {
+		return toArray(accepted);
+	}
+
+	@Override
+	public long[] getRejectedMoves() {
+		return toArray(rejected);
+	}
+
+	@Override
+	public long[] getFailedMoves() {
+		return toArray(failed);
+	}
+
+	@Override
+	public int[] getQueueDepths() {
+		return toArray(depths);
+	}
+
+	@Override
+	public int[] getMaxQueueDepths() {
+		return toArray(maxDepths);
+	}
+
+	@Override
+	public double[] getUpdateMeanMicros() {
+		double[] result = new double[updates.length];
+		for (int k = 0; k < updates.length; k++) {
+			result[k] = updates[k].getMean() / 1e3;
+		}
+		return result;
+	}
+
+	@Override
+	public double[] getUpdateP99Micros() {
+		double[] result = new double[updates.length];
+		for (int k = 0; k < updates.length; k++) {
+			result[k] = updates[k].getPercentile(99) / 1e3;
+		}
+		return result;
+	}
+
+	@Override
+	public int[] getDeadlineMisses() {
+		return toArray(misses);
+	}
+
+	@Override
+	public void reset() {
+		for (Histogram h : phases) {
+			h.reset();
+		}
+		for (int k = 0; k < updates.length; k++) {
+			updates[k].reset();
+			accepted.set(k, 0);
+			rejected.set(k, 0);
+			failed.set(k, 0);
+			depths.set(k, 0);
+			maxDepths.set(k, 0);
+			misses.set(k, 0);
+		}
+		cycles.set(0);
+	}
+
+	/**
+	 * Registers the metrics with the platform MBean server as
+	 * <code>generals:type=GameBoard,name=</code> and the name, with an
+	 * <code>id</code> that is unique in the JVM so that games with the same
+	 * name, such as two games from the same seed, do not clash.
+	 *
+	 * @param name
+	 *            - the name of the game
+	 * @return <code>true</code> if successful
+	 */
+	public boolean register(String name) {
+		try {
+			ObjectName objectName = new ObjectName("generals:type=GameBoard,name=" + ObjectName.quote(name) + ",id="
+					+ ids.incrementAndGet());
+			ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+			this.name = objectName;
+			return true;
+		} catch (JMException e) {
+			System.err.println("Could not register the metrics of game " + name + ": " + e);
+			return false;
+		}
+	}
+
+	/**
+	 * Removes the metrics from the platform MBean server.
+	 *
+	 * @return <code>true</code> if successful
+	 */
+	public boolean unregister() {
+		if (name == null) {
+			return false;
+		}
+		try {
+			ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+			name = null;
+			return true;
+		} catch (JMException e) {
+			return false;
+		}
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+		for (int k = 0; k < PHASES.length; k++) {
+			sb.append(String.format("%-10s %s%n", PHASES[k], phases[k]));
+		}
+		for (int k = 0; k < updates.length; k++) {
+			sb.append(String.format("player %d: %d accepted, %d rejected, %d failed, queue %d (max %d), missed %d, "
+					+ "update %s%n", k + 1, accepted.get(k), rejected.get(k), failed.get(k), depths.get(k),
+					maxDepths.get(k), misses.get(k), updates[k]));
+		}
+		return sb.toString();
+	}
+
+	private static long[] toArray(AtomicLongArray a) {
+		long[] result = new long[a.length()];
+		for (int k = 0; k < result.length; k++) {
+			result[k] = a.get(k);
+		}
+		return result;
+	}
+
+	private static int[] toArray(AtomicIntegerArray a) {
+		int[] result = new int[a.length()];
+		for (int k = 0; k < result.length; k++) {
+			result[k] = a.get(k);
+		}
+		return result;
+	}
+}
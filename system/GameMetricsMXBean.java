@@ -0,0 +1,51 @@
+package system;
+
+import java.util.Map;
+
+/**
+ * The management interface of the metrics of a game board. Times are in
+ * microseconds.
+ *
+ * @author Axel Li
+ */
+public interface GameMetricsMXBean {
+	public long getCycles();
+
+	public long getGenerated();
+
+	/**
+	 * Returns the mean time of each phase of a cycle and of map generation.
+	 * 
+	 * @return the mean time by phase
+	 */
+	public Map<String, Double> getMeanMicros();
+
+	/**
+	 * Returns the 99th percentile time of each phase of a cycle and of map
+	 * generation.
+	 * 
+	 * @return the 99th percentile time by phase
+	 */
+	public Map<String, Double> getP99Micros();
+
+	public long[] getAcceptedMoves();
+
+	public long[] getRejectedMoves();
+
+	public long[] getFailedMoves();
+
+	public int[] getQueueDepths();
+
+	public int[] getMaxQueueDepths();
+
+	public double[] getUpdateMeanMicros();
+
+	public double[] getUpdateP99Micros();
+
+	public int[] getDeadlineMisses();
+
+	/**
+	 * Forgets every recorded time and count.
+	 */
+	public void reset();
+}
@@ -1,7 +1,10 @@
 package system;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
 
 import players.AI;
 import players.PlayerGraphics;
@@ -14,18 +17,20 @@ import players.SpectatorGraphics;
  */
 public class GameStart {
 	private static final int minI = 15;
-	private static final int maxI = 25;
 	private static final int minJ = 15;
-	private static final int maxJ = 25;
 	private static final double minMountain = 0;
-	private static final double maxMountain = 0.2;
 	private static final double minCity = 0;
-	private static final double maxCity = 0.07;
 	private static final int minTick = 100;
 	private static final int maxTick = 2000;
-	private static final int minWaitTime = 10;
-	private static final int maxPlayers = 8;
-	private static final int maxSpectators = 8;
+	private static final int largeSize = 2000;
+	private static final int largePlayers = 256;
+	private static final int largeSpectators = 64;
+	private int maxI = 25;
+	private int maxJ = 25;
+	private int maxPlayers = 8;
+	private int maxSpectators = 8;
+	private double maxMountain = 0.2;
+	private double maxCity = 0.07;
 	private int iSize = 18;
 	private int jSize = 18;
 	private double mountain = 0.12;
@@ -33,6 +38,12 @@ public class GameStart {
 	private int manhattan = -1;
 	private int maze = -1;
 	private int tick = 500;
+	private long seed;
+	private String replay;
+	private boolean parallel;
+	private MapPool maps;
+	private TickScheduler.Overrun overrun = TickScheduler.Overrun.SKIP;
+	private TickScheduler scheduler;
 	private List<Player> players;
 	private List<Spectator> spectators;
 	private Space[][] board;
@@ -44,6 +55,7 @@ public class GameStart {
 	public GameStart() {
 		players = new ArrayList<>();
 		spectators = new ArrayList<>();
+		seed = new SplittableRandom().nextLong();
 	}
 
 	/**
@@ -51,29 +63,98 @@ public class GameStart {
 	 * 
 	 * @return <code>true</code>
 	 * @throws InterruptedException
+	 * @throws IOException
+	 *             if the replay cannot be written
 	 */
-	public boolean startGame() throws InterruptedException {
+	public boolean startGame() throws InterruptedException, IOException {
 		if (board == null) {
 			g = new GameBoard(players.toArray(new Player[players.size()]),
 					spectators.toArray(new Spectator[spectators.size()]), iSize, jSize, mountain, city, manhattan,
-					maze);
+					maze, seed, maps);
 		} else {
 			g = new GameBoard(board, players.toArray(new Player[players.size()]),
-					spectators.toArray(new Spectator[spectators.size()]), mountain, city, manhattan, maze);
+					spectators.toArray(new Spectator[spectators.size()]), mountain, city, manhattan, maze, seed);
 		}
 //		int x = 200;
 //		while (x-- > 0) {// TODO: for debugging purposes only, remove when finished
 //			g.cycle();
 //		}
-		while (g.gameEnd() == 0) {
-			long before = System.nanoTime();
-			g.cycle();
-			long time = (long) (tick - (System.nanoTime() - before) / 1e6);
-			Thread.sleep(Math.max(time, minWaitTime));
+		if (parallel) {
+			g.setPool(ForkJoinPool.commonPool());
+		}
+		g.getMetrics().register(Long.toString(seed));
+		ReplayWriter r = replay == null ? null : new ReplayWriter(replay, true);
+		try {
+			g.setReplay(r);
+			scheduler = new TickScheduler(tick * 1_000_000L, overrun, 2);
+			scheduler.run(g::cycle, () -> g.gameEnd() != 0);
+		} finally {
+			g.getMetrics().unregister();
+			if (r != null) {
+				r.close();
+			}
 		}
 		return true;
 	}
 
+	/**
+	 * Sets the largest board and the most players and spectators a game can
+	 * have. The limits cannot be set below the current settings.
+	 * 
+	 * @param maxI
+	 *            - the largest i size
+	 * @param maxJ
+	 *            - the largest j size
+	 * @param maxPlayers
+	 *            - the most players
+	 * @param maxSpectators
+	 *            - the most spectators
+	 * @return <code>true</code> if successful
+	 */
+	public boolean setLimits(int maxI, int maxJ, int maxPlayers, int maxSpectators) {
+		if (maxI >= iSize && maxJ >= jSize && maxPlayers >= Math.max(players.size(), 1)
+				&& maxSpectators >= spectators.size()) {
+			this.maxI = maxI;
+			this.maxJ = maxJ;
+			this.maxPlayers = maxPlayers;
+			this.maxSpectators = maxSpectators;
+			return true;
+		} else {
+			return false;
+		}
+	}
+
+	/**
+	 * Sets the largest proportions of mountains and cities. Mountains and cities
+	 * together must leave some land, and the limits cannot be set below the
+	 * current proportions.
+	 * 
+	 * @param maxMountain
+	 *            - the largest proportion of mountains
+	 * @param maxCity
+	 *            - the largest proportion of cities
+	 * @return <code>true</code> if successful
+	 */
+	public boolean setDensityLimits(double maxMountain, double maxCity) {
+		if (maxMountain >= mountain && maxCity >= city && maxMountain + maxCity < 1) {
+			this.maxMountain = maxMountain;
+			this.maxCity = maxCity;
+			return true;
+		} else {
+			return false;
+		}
+	}
+
+	/**
+	 * Raises the limits for large maps: boards of up to 2000x2000 with up to
+	 * 256 players and 64 spectators. Large boards should be played by
+	 * spectators and players that take deltas, since the views of the others
+	 * are a matrix of objects.
+	 */
+	public void setLargeMaps() {
+		setLimits(largeSize, largeSize, largePlayers, largeSpectators);
+	}
+
 	/**
 	 * Sets the size
 	 * 
@@ -194,6 +275,84 @@ public class GameStart {
 		return tick;
 	}
 
+	/**
+	 * Sets the seed of the game so that it can be replayed exactly.
+	 * 
+	 * @param seed
+	 *            - the seed
+	 */
+	public void setSeed(long seed) {
+		this.seed = seed;
+	}
+
+	/**
+	 * Returns the seed of the game.
+	 * 
+	 * @return the seed
+	 */
+	public long getSeed() {
+		return seed;
+	}
+
+	/**
+	 * Sets what happens when ticks fall behind the schedule.
+	 * 
+	 * @param overrun
+	 *            - <code>SKIP</code> to drop missed ticks or
+	 *            <code>CATCH_UP</code> to run up to two late ticks back to back
+	 */
+	public void setOverrun(TickScheduler.Overrun overrun) {
+		this.overrun = overrun;
+	}
+
+	/**
+	 * Returns the scheduler of the current or last game, which holds the tick
+	 * lateness and cycle duration histograms.
+	 * 
+	 * @return the scheduler, <code>null</code> if no game has started
+	 */
+	public TickScheduler getScheduler() {
+		return scheduler;
+	}
+
+	/**
+	 * Sets the file that games are appended to as replays.
+	 * 
+	 * @param replay
+	 *            - the name of the file, <code>null</code> to not record
+	 */
+	public void setReplay(String replay) {
+		this.replay = replay;
+	}
+
+	/**
+	 * Sets the pool that random boards are taken from, so a game can start
+	 * without waiting for its map. The game is then only reproducible from its
+	 * replay.
+	 * 
+	 * @param maps
+	 *            - the pool of maps, <code>null</code> to generate the board from
+	 *            the seed
+	 */
+	public void setMapPool(MapPool maps) {
+		this.maps = maps;
+	}
+
+	/**
+	 * Sets whether the players are updated in parallel, so a tick takes as long
+	 * as the slowest player instead of all players together. The players and
+	 * spectators are then updated on common pool threads instead of the tick
+	 * thread, so every one of them must be thread-safe; Swing interfaces are
+	 * not. Boards of later resets are also generated on the common pool. Off by
+	 * default.
+	 * 
+	 * @param parallel
+	 *            - <code>true</code> to update the players on the common pool
+	 */
+	public void setParallel(boolean parallel) {
+		this.parallel = parallel;
+	}
+
 	/**
 	 * Gets the number of players.
 	 * 
@@ -287,7 +446,7 @@ public class GameStart {
 		}
 	}
 
-	public static void main(String[] args) throws InterruptedException {
+	public static void main(String[] args) throws InterruptedException, IOException {
 		/*
 		 * test code for a custom game from before game start class was created
 		 * 
@@ -0,0 +1,33 @@
+package system;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A flight recorder event for a call to <code>GameGenerator.create</code>.
+ *
+ * @author Axel Li
+ */
+@Name("generals.Generate")
+@Label("Generate Map")
+@Category("Generals")
+@Description("An attempt to generate a map")
+public class GenerateEvent extends jdk.jfr.Event {
+	@Label("I Size")
+	public int iSize;
+
+	@Label("J Size")
+	public int jSize;
+
+	@Label("Kingdoms")
+	public int kingdoms;
+
+	@Label("Attempts")
+	@Description("The number of candidate maps that were tried")
+	public int attempts;
+
+	@Label("Successful")
+	public boolean successful;
+}
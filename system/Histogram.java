@@ -0,0 +1,170 @@
+package system;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A latency histogram with logarithmic buckets. Every power of two is split
+ * into eight buckets, so each recorded value is kept within 12.5%. Values can
+ * be recorded from any thread without locking.
+ *
+ * @author Axel Li
+ */
+public class Histogram {
+	private static final int SUB = 3;
+	private static final int BUCKETS = (64 - SUB) << SUB;
+	private final AtomicLongArray counts;
+	private final AtomicLong count;
+	private final AtomicLong sum;
+	private final AtomicLong max;
+
+	/**
+	 * Creates an empty histogram.
+	 */
+	public Histogram() {
+		counts = new AtomicLongArray(BUCKETS);
+		count = new AtomicLong();
+		sum = new AtomicLong();
+		max = new AtomicLong();
+	}
+
+	/**
+	 * Records a value. Negative values are recorded as 0.
+	 *
+	 * @param value
+	 *            - the value, usually in nanoseconds
+	 */
+	public void record(long value) {
+		value = Math.max(value, 0);
+		counts.incrementAndGet(bucket(value));
+		count.incrementAndGet();
+		sum.addAndGet(value);
+		long m;
+		while (value > (m = max.get()) && !max.compareAndSet(m, value)) {
+		}
+	}
+
+	/**
+	 * Returns the number of recorded values.
+	 *
+	 * @return the count
+	 */
+	public long getCount() {
+		return count.get();
+	}
+
+	/**
+	 * Returns the mean of the recorded values.
+	 *
+	 * @return the mean, 0 if nothing was recorded
+	 */
+	public double getMean() {
+		long c = count.get();
+		return c == 0 ? 0 : (double) sum.get() / c;
+	}
+
+	/**
+	 * Returns the largest recorded value.
+	 *
+	 * @return the maximum
+	 */
+	public long getMax() {
+		return max.get();
+	}
+
+	/**
+	 * Returns an upper bound of a percentile of the recorded values.
+	 *
+	 * @param percentile
+	 *            - the percentile between 0 and 100
+	 * @return the largest value in the bucket holding the percentile
+	 */
+	public long getPercentile(double percentile) {
+		long c = count.get();
+		if (c == 0) {
+			return 0;
+		}
+		long target = Math.max(1, (long) Math.ceil(c * percentile / 100));
+		long seen = 0;
+		for (int b = 0; b < BUCKETS; b++) {
+			seen += counts.get(b);
+			if (seen >= target) {
+				return Math.min(upper(b), max.get());
+			}
+		}
+		return max.get();
+	}
+
+	/**
+	 * Forgets every recorded value.
+	 */
+	public void reset() {
+		for (int b = 0; b < BUCKETS; b++) {
+			counts.set(b, 0);
+		}
+		count.set(0);
+		sum.set(0);
+		max.set(0);
+	}
+
+	/**
+	 * Adds every value recorded in another histogram.
+	 *
+	 * @param other
+	 *            - the other histogram
+	 */
+	public void add(Histogram other) {
+		for (int b = 0; b < BUCKETS; b++) {
+			counts.addAndGet(b, other.counts.get(b));
+		}
+		count.addAndGet(other.count.get());
+		sum.addAndGet(other.sum.get());
+		long m;
+		long value = other.max.get();
+		while (value > (m = max.get()) && !max.compareAndSet(m, value)) {
+		}
+	}
+
+	/**
+	 * Summarizes the histogram in milliseconds.
+	 *
+	 * @return the count, mean, median, 99th percentile and maximum
+	 */
+	@Override
+	public String toString() {
+		return String.format("n=%d mean=%.3fms p50=%.3fms p99=%.3fms max=%.3fms", getCount(), getMean() / 1e6,
+				getPercentile(50) / 1e6, getPercentile(99) / 1e6, getMax() / 1e6);
+	}
+
+	/**
+	 * Finds the bucket of a value.
+	 *
+	 * @param value
+	 *            - a value that is not negative
+	 * @return the index of the bucket
+	 */
+	private static int bucket(long value) {
+		if (value < 1 << SUB) {
+			return (int) value;
+		}
+		int exp = 63 - Long.numberOfLeadingZeros(value);
+		int sub = (int) (value >>> (exp - SUB)) & ((1 << SUB) - 1);
+		return ((exp - SUB + 1) << SUB) + sub;
+	}
+
+	/**
+	 * Finds the largest value of a bucket.
+	 *
+	 * @param b
+	 *            - the index of the bucket
+	 * @return the largest value that falls in the bucket
+	 */
+	private static long upper(int b) {
+		if (b < 1 << SUB) {
+			return b;
+		}
+		int exp = (b >> SUB) + SUB - 1;
+		long sub = b & ((1 << SUB) - 1);
+		return (((1L << SUB) + sub + 1) << (exp - SUB)) - 1;
+	}
+}
@@ -0,0 +1,171 @@
+package system;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A game run by a <code>GameHost</code>. It keeps the schedule and the latency
+ * statistics of the game and lets the caller wait for the game to end.
+ *
+ * @author Axel Li
+ */
+public class HostedGame {
+	private final GameBoard game;
+	private final TickScheduler scheduler;
+	private final int maxTicks;
+	private final CountDownLatch finished;
+	private volatile boolean cancelled;
+	private volatile RuntimeException failure;
+	long due;
+
+	/**
+	 * Creates a hosted game.
+	 *
+	 * @param game
+	 *            - the game board
+	 * @param scheduler
+	 *            - the schedule of the game, used for its period, overrun policy
+	 *            and statistics
+	 * @param maxTicks
+	 *            - the number of ticks after which the game is stopped, 0 for no
+	 *            limit
+	 * @param due
+	 *            - when the first tick is due
+	 */
+	HostedGame(GameBoard game, TickScheduler scheduler, int maxTicks, long due) {
+		this.game = game;
+		this.scheduler = scheduler;
+		this.maxTicks = maxTicks;
+		this.due = due;
+		finished = new CountDownLatch(1);
+	}
+
+	/**
+	 * Runs one cycle of the game if it should still run.
+	 *
+	 * @return <code>true</code> if the game should keep running
+	 */
+	boolean tick() {
+		if (isOver()) {
+			return false;
+		}
+		game.cycle();
+		return !isOver();
+	}
+
+	/**
+	 * Checks whether the game has ended, was stopped or ran out of ticks.
+	 *
+	 * @return <code>true</code> if no more cycles should run
+	 */
+	private boolean isOver() {
+		return cancelled || game.gameEnd() != 0 || (maxTicks > 0 && game.getCount() >= maxTicks);
+	}
+
+	/**
+	 * Marks the game as ended because a cycle failed.
+	 *
+	 * @param e
+	 *            - the failure
+	 */
+	void fail(RuntimeException e) {
+		failure = e;
+	}
+
+	/**
+	 * Wakes everyone waiting for the game.
+	 */
+	void finish() {
+		finished.countDown();
+	}
+
+	/**
+	 * Stops the game before its next cycle.
+	 */
+	public void cancel() {
+		cancelled = true;
+	}
+
+	/**
+	 * Checks whether the game is no longer run by the host.
+	 *
+	 * @return <code>true</code> if the game has finished
+	 */
+	public boolean isDone() {
+		return finished.getCount() == 0;
+	}
+
+	/**
+	 * Waits for the game to finish.
+	 *
+	 * @throws InterruptedException
+	 *             if the thread is interrupted while waiting
+	 */
+	public void await() throws InterruptedException {
+		finished.await();
+	}
+
+	/**
+	 * Waits for the game to finish for at most a given time.
+	 *
+	 * @param timeout
+	 *            - the longest time to wait in milliseconds
+	 * @return <code>true</code> if the game finished
+	 * @throws InterruptedException
+	 *             if the thread is interrupted while waiting
+	 */
+	public boolean await(long timeout) throws InterruptedException {
+		return finished.await(timeout, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Returns the winner of the game.
+	 *
+	 * @return the player number of the winner, 0 if there is none yet
+	 */
+	public int getWinner() {
+		return game.gameEnd();
+	}
+
+	/**
+	 * Returns the failure that ended the game.
+	 *
+	 * @return the exception thrown by a cycle, <code>null</code> if none
+	 */
+	public RuntimeException getFailure() {
+		return failure;
+	}
+
+	/**
+	 * Returns the game board. It must not be changed while the game is hosted.
+	 *
+	 * @return the game board
+	 */
+	public GameBoard getGame() {
+		return game;
+	}
+
+	/**
+	 * Returns the schedule of the game with its lateness, cycle time and
+	 * skipped ticks.
+	 *
+	 * @return the tick scheduler
+	 */
+	public TickScheduler getScheduler() {
+		return scheduler;
+	}
+
+	/**
+	 * Estimates the share of a worker thread the game needs.
+	 *
+	 * @return the mean cycle time divided by the period
+	 */
+	public double getLoad() {
+		return scheduler.getDuration().getMean() / scheduler.getPeriod();
+	}
+
+	@Override
+	public String toString() {
+		return "tick " + game.getCount() + ", " + scheduler;
+	}
+}
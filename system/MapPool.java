@@ -0,0 +1,279 @@
+package system;
+
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A pool of generated maps, kept topped up by background threads so that a
+ * game can start without waiting for its map. Maps are kept apart by their
+ * settings: the size, the number of mountains, cities and kingdoms and the
+ * minimum distances between kings. The first game with new settings generates
+ * its own map and starts the refills for those settings.
+ *
+ * A map taken from the pool is not derived from the seed of the game, so such
+ * a game can be reproduced from its replay but not from its seed alone.
+ *
+ * @author Axel Li
+ */
+public class MapPool implements AutoCloseable {
+	private static final int attempts = 1000;
+	private static final int timeLimit = 5000;
+	private final int capacity;
+	private final ExecutorService workers;
+	private final Map<String, Entry> entries;
+	private final SplittableRandom seeds;
+	private final AtomicLong hits;
+	private final AtomicLong misses;
+	private final AtomicLong refills;
+	private final AtomicLong failures;
+
+	/**
+	 * Creates an empty pool and its threads.
+	 *
+	 * @param threads
+	 *            - the number of background threads
+	 * @param capacity
+	 *            - the number of maps kept ready for each settings
+	 */
+	public MapPool(int threads, int capacity) {
+		if (threads <= 0 || capacity <= 0) {
+			throw new IllegalArgumentException("Need at least one thread and one map");
+		}
+		this.capacity = capacity;
+		AtomicLong ids = new AtomicLong();
+		workers = Executors.newFixedThreadPool(threads, r -> {
+			Thread t = new Thread(r, "map-pool-" + ids.incrementAndGet());
+			t.setDaemon(true);
+			t.setPriority(Thread.MIN_PRIORITY);
+			return t;
+		});
+		entries = new ConcurrentHashMap<>();
+		seeds = new SplittableRandom();
+		hits = new AtomicLong();
+		misses = new AtomicLong();
+		refills = new AtomicLong();
+		failures = new AtomicLong();
+	}
+
+	/**
+	 * Starts filling the pool for the settings of a game before the first game
+	 * asks for a map.
+	 *
+	 * @param i
+	 *            - the i size of the board
+	 * @param j
+	 *            - the j size of the board
+	 * @param proportionMountains
+	 *            - the proportion of mountains
+	 * @param proportionCities
+	 *            - the proportion of cities
+	 * @param kingdoms
+	 *            - the number of kingdoms
+	 * @param minMazeDist
+	 *            - the minimum maze distance between kingdoms
+	 * @param minManhattanDist
+	 *            - the minimum manhattan distance between kingdoms
+	 */
+	public void prepare(int i, int j, double proportionMountains, double proportionCities, int kingdoms,
+			int minMazeDist, int minManhattanDist) {
+		refill(entry(new GameGenerator(i, j, proportionMountains, proportionCities, kingdoms, minMazeDist,
+				minManhattanDist, 0)));
+	}
+
+	/**
+	 * Takes a ready map with the settings of a generator and starts generating
+	 * its replacement.
+	 *
+	 * @param g
+	 *            - the generator of the game
+	 * @return the grid of the map as returned by <code>getGrid</code>,
+	 *         <code>null</code> if no map is ready
+	 */
+	int[][] take(GameGenerator g) {
+		Entry e = entry(g);
+		int[][] grid = e.ready.poll();
+		if (grid != null) {
+			hits.incrementAndGet();
+		} else {
+			misses.incrementAndGet();
+		}
+		refill(e);
+		return grid;
+	}
+
+	/**
+	 * Returns the entry for the settings of a generator, creating it if needed.
+	 *
+	 * @param g
+	 *            - a generator with the settings
+	 * @return the entry
+	 */
+	private Entry entry(GameGenerator g) {
+		return entries.computeIfAbsent(g.getKey(), k -> new Entry(g.withSeed(0)));
+	}
+
+	/**
+	 * Starts generating maps until the entry is full. Settings that can never be
+	 * met are not generated.
+	 *
+	 * @param e
+	 *            - the entry
+	 */
+	private void refill(Entry e) {
+		if (!e.possible) {
+			return;
+		}
+		while (reserve(e)) {
+			long seed;
+			synchronized (seeds) {
+				seed = seeds.nextLong();
+			}
+			try {
+				workers.execute(() -> generate(e, seed));
+			} catch (RejectedExecutionException ex) {
+				e.generating.decrementAndGet();
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Reserves a slot for a new map if the entry is not full. The check and the
+	 * reservation are one compare-and-set, so threads refilling the same entry
+	 * at once cannot overfill it.
+	 *
+	 * @param e
+	 *            - the entry
+	 * @return <code>true</code> if a slot was reserved
+	 */
+	private boolean reserve(Entry e) {
+		while (true) {
+			int generating = e.generating.get();
+			if (e.ready.size() + generating >= capacity) {
+				return false;
+			}
+			if (e.generating.compareAndSet(generating, generating + 1)) {
+				return true;
+			}
+		}
+	}
+
+	/**
+	 * Generates a map for an entry on a background thread.
+	 *
+	 * @param e
+	 *            - the entry
+	 * @param seed
+	 *            - the seed of the map
+	 */
+	private void generate(Entry e, long seed) {
+		try {
+			GameGenerator g = e.template.withSeed(seed);
+			if (g.create(attempts, timeLimit, false)) {
+				e.ready.offer(g.getGrid());
+				refills.incrementAndGet();
+			} else {
+				failures.incrementAndGet();
+			}
+		} finally {
+			e.generating.decrementAndGet();
+		}
+	}
+
+	/**
+	 * Returns the number of maps that were ready when a game asked for one.
+	 *
+	 * @return the number of hits
+	 */
+	public long getHits() {
+		return hits.get();
+	}
+
+	/**
+	 * Returns the number of games that had to generate their own map.
+	 *
+	 * @return the number of misses
+	 */
+	public long getMisses() {
+		return misses.get();
+	}
+
+	/**
+	 * Returns the number of maps generated in the background.
+	 *
+	 * @return the number of refills
+	 */
+	public long getRefills() {
+		return refills.get();
+	}
+
+	/**
+	 * Returns the number of background generations that found no valid map.
+	 *
+	 * @return the number of failures
+	 */
+	public long getFailures() {
+		return failures.get();
+	}
+
+	/**
+	 * Returns the number of maps that are ready over all settings.
+	 *
+	 * @return the number of ready maps
+	 */
+	public int getReady() {
+		int ready = 0;
+		for (Entry e : entries.values()) {
+			ready += e.ready.size();
+		}
+		return ready;
+	}
+
+	/**
+	 * Stops the background threads. Maps that are ready can still be taken.
+	 */
+	@Override
+	public void close() {
+		workers.shutdownNow();
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%d hits, %d misses, %d refills, %d failures, %d ready over %d settings", getHits(),
+				getMisses(), getRefills(), getFailures(), getReady(), entries.size());
+	}
+
+	/**
+	 * The ready maps of one setting.
+	 *
+	 * @author Axel Li
+	 */
+	private class Entry {
+		private final GameGenerator template;
+		private final boolean possible;
+		private final BlockingQueue<int[][]> ready;
+		private final AtomicInteger generating;
+
+		/**
+		 * Creates an empty entry.
+		 *
+		 * @param template
+		 *            - a generator with the settings, only used to derive new
+		 *            generators
+		 */
+		private Entry(GameGenerator template) {
+			this.template = template;
+			possible = template.getProblem() == null;
+			ready = new ArrayBlockingQueue<>(capacity);
+			generating = new AtomicInteger();
+		}
+	}
+}
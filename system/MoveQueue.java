@@ -0,0 +1,179 @@
+package system;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded, lock-free queue of moves with a single producer (the player) and
+ * a single consumer (the game board). The producer can also take back its
+ * latest move, and either side can clear the queue.
+ *
+ * The head, the tail and a stamp are packed into one <code>long</code> that is
+ * only changed by compare-and-set. The stamp changes whenever the tail moves
+ * backwards or the queue is cleared, so the consumer can never take a move
+ * that was taken back and replaced in the meantime.
+ *
+ * @author Axel Li
+ */
+public class MoveQueue {
+	private static final int BITS = 20;
+	private static final long POSITION = (1L << BITS) - 1;
+	private static final long STAMP = 1L << (2 * BITS);
+	private final Move[] slots;
+	private final int mask;
+	private final AtomicLong state;
+
+	/**
+	 * Creates a queue that holds up to 1023 moves.
+	 */
+	public MoveQueue() {
+		this(1024);
+	}
+
+	/**
+	 * Creates a queue.
+	 *
+	 * @param capacity
+	 *            - the number of slots, a power of two no larger than 2^19; the
+	 *            queue holds one move less than this
+	 */
+	public MoveQueue(int capacity) {
+		if (capacity < 2 || capacity > 1 << (BITS - 1) || Integer.bitCount(capacity) != 1) {
+			throw new IllegalArgumentException("Capacity must be a power of two between 2 and 2^19: " + capacity);
+		}
+		slots = new Move[capacity];
+		mask = capacity - 1;
+		state = new AtomicLong();
+	}
+
+	/**
+	 * Adds a move to the end of the queue. Only called by the producer.
+	 *
+	 * @param m
+	 *            - the move
+	 * @return <code>true</code> if added, <code>false</code> if the queue is full
+	 */
+	public boolean offer(Move m) {
+		while (true) {
+			long s = state.get();
+			long head = s & POSITION;
+			long tail = (s >>> BITS) & POSITION;
+			if (((tail - head) & POSITION) >= mask) {
+				return false;
+			}
+			slots[(int) tail & mask] = m;
+			if (state.compareAndSet(s, pack(head, tail + 1, s))) {
+				return true;
+			}
+		}
+	}
+
+	/**
+	 * Takes the first move from the queue. Only called by the consumer.
+	 *
+	 * @return the first move, <code>null</code> if the queue is empty
+	 */
+	public Move poll() {
+		while (true) {
+			long s = state.get();
+			long head = s & POSITION;
+			long tail = (s >>> BITS) & POSITION;
+			if (head == tail) {
+				return null;
+			}
+			Move m = slots[(int) head & mask];
+			if (state.compareAndSet(s, pack(head + 1, tail, s))) {
+				return m;
+			}
+		}
+	}
+
+	/**
+	 * Takes back the latest move. Only called by the producer.
+	 *
+	 * @return the latest move, <code>null</code> if the queue is empty
+	 */
+	public Move pollLast() {
+		while (true) {
+			long s = state.get();
+			long head = s & POSITION;
+			long tail = (s >>> BITS) & POSITION;
+			if (head == tail) {
+				return null;
+			}
+			Move m = slots[(int) (tail - 1) & mask];
+			if (state.compareAndSet(s, pack(head, tail - 1, s + STAMP))) {
+				return m;
+			}
+		}
+	}
+
+	/**
+	 * Returns the first move without taking it. The move may be taken by the
+	 * other side at any time.
+	 *
+	 * @return the first move, <code>null</code> if the queue is empty
+	 */
+	public Move peekFirst() {
+		long s = state.get();
+		long head = s & POSITION;
+		return head == ((s >>> BITS) & POSITION) ? null : slots[(int) head & mask];
+	}
+
+	/**
+	 * Returns the latest move without taking it back.
+	 *
+	 * @return the latest move, <code>null</code> if the queue is empty
+	 */
+	public Move peekLast() {
+		long s = state.get();
+		long tail = (s >>> BITS) & POSITION;
+		return (s & POSITION) == tail ? null : slots[(int) (tail - 1) & mask];
+	}
+
+	/**
+	 * Removes every move. Can be called by either side.
+	 */
+	public void clear() {
+		while (true) {
+			long s = state.get();
+			long tail = (s >>> BITS) & POSITION;
+			if (state.compareAndSet(s, pack(tail, tail, s + STAMP))) {
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Checks whether the queue is empty.
+	 *
+	 * @return <code>true</code> if there are no moves
+	 */
+	public boolean isEmpty() {
+		return size() == 0;
+	}
+
+	/**
+	 * Returns the number of moves in the queue.
+	 *
+	 * @return the number of moves
+	 */
+	public int size() {
+		long s = state.get();
+		return (int) ((((s >>> BITS) & POSITION) - (s & POSITION)) & POSITION);
+	}
+
+	/**
+	 * Packs a head and a tail with the stamp of a state.
+	 *
+	 * @param head
+	 *            - the head position
+	 * @param tail
+	 *            - the tail position
+	 * @param stamp
+	 *            - the state whose stamp is kept
+	 * @return the packed state
+	 */
+	private static long pack(long head, long tail, long stamp) {
+		return (stamp & -STAMP) | (tail & POSITION) << BITS | (head & POSITION);
+	}
+}
@@ -0,0 +1,103 @@
+package system;
+
+/**
+ * The player view of a space packed into a single <code>long</code>, so views
+ * can be kept in reusable arrays instead of one <code>Viewed</code> object per
+ * cell. The troops take the low 32 bits, the type the next 16 bits, and the
+ * known, mountain, city and king flags the 4 bits above those.
+ *
+ * @author Axel Li
+ */
+public final class PackedView {
+	private static final int TYPE = 32;
+	private static final long KNOWN = 1L << 48;
+	private static final long MOUNTAIN = 1L << 49;
+	private static final long CITY = 1L << 50;
+	private static final long KING = 1L << 51;
+
+	/**
+	 * The view of a space that was never seen.
+	 */
+	public static final long UNKNOWN = 0;
+
+	/**
+	 * The view of a visible mountain.
+	 */
+	public static final long VISIBLE_MOUNTAIN = KNOWN | MOUNTAIN;
+
+	/**
+	 * The view of a mountain, city or king hidden by the fog of war.
+	 */
+	public static final long OBSTACLE = MOUNTAIN;
+
+	private PackedView() {
+	}
+
+	/**
+	 * Packs the view of a space.
+	 *
+	 * @param known
+	 *            - <code> true</code> if the land is known
+	 * @param mountain
+	 *            - <code> true</code> if the land appears as a mountain
+	 * @param type
+	 *            - the type of the troops on the land, below 65536
+	 * @param troops
+	 *            - the number of troops on the land
+	 * @param city
+	 *            - <code> true</code> if the land is a city
+	 * @param king
+	 *            - <code> true</code> if the land is a king
+	 * @return the packed view
+	 */
+	public static long pack(boolean known, boolean mountain, int type, int troops, boolean city, boolean king) {
+		return (troops & 0xFFFFFFFFL) | (long) (type & 0xFFFF) << TYPE | (known ? KNOWN : 0)
+				| (mountain ? MOUNTAIN : 0) | (city ? CITY : 0) | (king ? KING : 0);
+	}
+
+	/**
+	 * Packs a <code>Viewed</code> object.
+	 *
+	 * @param v
+	 *            - the view of a space
+	 * @return the packed view
+	 */
+	public static long pack(Viewed v) {
+		return pack(v.known, v.mountain, v.type, v.troops, v.city, v.king);
+	}
+
+	/**
+	 * Unpacks a view into a new <code>Viewed</code> object.
+	 *
+	 * @param v
+	 *            - the packed view
+	 * @return a new <code>Viewed</code> object
+	 */
+	public static Viewed toViewed(long v) {
+		return new Viewed(isKnown(v), isMountain(v), getType(v), getTroops(v), isCity(v), isKing(v));
+	}
+
+	public static boolean isKnown(long v) {
+		return (v & KNOWN) != 0;
+	}
+
+	public static boolean isMountain(long v) {
+		return (v & MOUNTAIN) != 0;
+	}
+
+	public static int getType(long v) {
+		return (int) (v >>> TYPE) & 0xFFFF;
+	}
+
+	public static int getTroops(long v) {
+		return (int) v;
+	}
+
+	public static boolean isCity(long v) {
+		return (v & CITY) != 0;
+	}
+
+	public static boolean isKing(long v) {
+		return (v & KING) != 0;
+	}
+}
@@ -1,7 +1,5 @@
 package system;
 
-import java.util.ArrayDeque;
-
 /**
  * A player in the game.
  * 
@@ -13,7 +11,7 @@ public interface Player extends Spectator {
 	 * 
 	 * @return the queue for moves
 	 */
-	public ArrayDeque<Move> getQueue();
+	public MoveQueue getQueue();
 
 	/**
 	 * Notifies the player that a move has failed
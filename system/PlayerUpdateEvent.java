@@ -0,0 +1,29 @@
+package system;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Threshold;
+
+/**
+ * A flight recorder event for a call to a player's update method. Only updates
+ * of at least a millisecond are recorded unless the threshold is lowered.
+ *
+ * @author Axel Li
+ */
+@Name("generals.PlayerUpdate")
+@Label("Player Update")
+@Category("Generals")
+@Description("A player handling its view of one cycle")
+@Threshold("1 ms")
+public class PlayerUpdateEvent extends jdk.jfr.Event {
+	@Label("Player")
+	public int player;
+
+	@Label("Count")
+	public int count;
+
+	@Label("Keyframe")
+	public boolean keyframe;
+}
@@ -0,0 +1,18 @@
+package system;
+
+import java.util.SplittableRandom;
+
+/**
+ * A player whose random choices can be driven by the game's random stream.
+ *
+ * @author Axel Li
+ */
+public interface Randomized {
+	/**
+	 * Sets the random stream of the player.
+	 * 
+	 * @param random
+	 *            - the random stream
+	 */
+	public void setRandom(SplittableRandom random);
+}
@@ -0,0 +1,305 @@
+package system;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A reader for replays written by <code>ReplayWriter</code>. The file is memory
+ * mapped and only indexed when opened, so the board of any game can be rebuilt
+ * at any tick without reading the rest of the file. Files must be smaller than
+ * 2 GB.
+ *
+ * @author Axel Li
+ */
+public class ReplayReader implements AutoCloseable {
+	private final FileChannel channel;
+	private final MappedByteBuffer data;
+	private final List<Game> games;
+
+	/**
+	 * Opens and indexes a replay file.
+	 *
+	 * @param file
+	 *            - the name of the file
+	 * @throws IOException
+	 *             if the file cannot be read or is not a replay
+	 */
+	public ReplayReader(String file) throws IOException {
+		channel = FileChannel.open(Paths.get(file), StandardOpenOption.READ);
+		if (channel.size() > Integer.MAX_VALUE) {
+			channel.close();
+			throw new IOException("Replay is too large to map: " + file);
+		}
+		data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		games = new ArrayList<>();
+		if (data.limit() < 8 || data.getInt(0) != ReplayWriter.MAGIC || data.getInt(4) != ReplayWriter.VERSION) {
+			channel.close();
+			throw new IOException("Not a replay file: " + file);
+		}
+		index();
+	}
+
+	/**
+	 * Finds the start of every map and tick record. A record cut off at the end
+	 * of the file is ignored.
+	 *
+	 * @throws IOException
+	 *             if an unknown record is found
+	 */
+	private void index() throws IOException {
+		int pos = 8;
+		Game current = null;
+		while (pos < data.limit()) {
+			byte type = data.get(pos);
+			if (type == ReplayWriter.MAP) {
+				if (pos + 25 > data.limit()) {
+					break;
+				}
+				Game g = new Game(pos);
+				int end = g.cells + g.iSize * g.jSize * 7;
+				if (end > data.limit()) {
+					break;
+				}
+				games.add(g);
+				current = g;
+				pos = end;
+			} else if (type == ReplayWriter.TICK && current != null) {
+				if (pos + 7 > data.limit()) {
+					break;
+				}
+				int end = pos + 7 + (data.getShort(pos + 5) & 0xFFFF) * 11;
+				if (end > data.limit()) {
+					break;
+				}
+				current.addTick(pos);
+				pos = end;
+			} else {
+				throw new IOException("Unknown replay record at " + pos);
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of games in the replay.
+	 *
+	 * @return the number of games
+	 */
+	public int getGames() {
+		return games.size();
+	}
+
+	/**
+	 * Returns the seed of a game.
+	 *
+	 * @param game
+	 *            - the index of the game
+	 * @return the seed
+	 */
+	public long getSeed(int game) {
+		return games.get(game).seed;
+	}
+
+	/**
+	 * Returns the number of kingdoms of a game.
+	 *
+	 * @param game
+	 *            - the index of the game
+	 * @return the number of kingdoms
+	 */
+	public int getKingdoms(int game) {
+		return games.get(game).kingdoms;
+	}
+
+	/**
+	 * Returns the number of recorded ticks of a game.
+	 *
+	 * @param game
+	 *            - the index of the game
+	 * @return the number of tick records
+	 */
+	public int getTicks(int game) {
+		return games.get(game).ticks;
+	}
+
+	/**
+	 * Returns the count of a tick record.
+	 *
+	 * @param game
+	 *            - the index of the game
+	 * @param k
+	 *            - the index of the tick record
+	 * @return the number of the cycle
+	 */
+	public int getCount(int game, int k) {
+		return data.getInt(games.get(game).tick(k) + 1);
+	}
+
+	/**
+	 * Returns the number of moves in a tick record.
+	 *
+	 * @param game
+	 *            - the index of the game
+	 * @param k
+	 *            - the index of the tick record
+	 * @return the number of moves
+	 */
+	public int getMoveCount(int game, int k) {
+		return data.getShort(games.get(game).tick(k) + 5) & 0xFFFF;
+	}
+
+	/**
+	 * Returns the player that made a recorded move.
+	 *
+	 * @param game
+	 *            - the index of the game
+	 * @param k
+	 *            - the index of the tick record
+	 * @param n
+	 *            - the index of the move in the tick
+	 * @return the player number
+	 */
+	public int getPlayer(int game, int k, int n) {
+		return data.getShort(games.get(game).tick(k) + 7 + n * 11);
+	}
+
+	/**
+	 * Returns a recorded move.
+	 *
+	 * @param game
+	 *            - the index of the game
+	 * @param k
+	 *            - the index of the tick record
+	 * @param n
+	 *            - the index of the move in the tick
+	 * @return the move
+	 */
+	public Move getMove(int game, int k, int n) {
+		int pos = games.get(game).tick(k) + 7 + n * 11;
+		return new Move(data.getShort(pos + 2), data.getShort(pos + 4), data.getShort(pos + 6),
+				data.getShort(pos + 8), (data.get(pos + 10) & 1) != 0);
+	}
+
+	/**
+	 * Returns the outcome of a recorded move.
+	 *
+	 * @param game
+	 *            - the index of the game
+	 * @param k
+	 *            - the index of the tick record
+	 * @param n
+	 *            - the index of the move in the tick
+	 * @return <code>REJECTED</code>, <code>APPLIED</code> or <code>FAILED</code>
+	 *         from <code>ReplayWriter</code>
+	 */
+	public byte getOutcome(int game, int k, int n) {
+		return (byte) (data.get(games.get(game).tick(k) + 7 + n * 11 + 10) >> 1);
+	}
+
+	/**
+	 * Rebuilds the board of a game at the end of a cycle. Rejected moves are
+	 * skipped, since they never reached the board; failed moves are replayed,
+	 * since they moved troops without taking the target.
+	 *
+	 * @param game
+	 *            - the index of the game
+	 * @param count
+	 *            - the number of the cycle
+	 * @return a new board engine with the state after the cycle
+	 */
+	public BoardEngine boardAt(int game, int count) {
+		Game g = games.get(game);
+		BoardEngine board = new BoardEngine(g.iSize, g.jSize, g.kingdoms);
+		int pos = g.cells;
+		for (int i = 0; i < g.iSize; i++) {
+			for (int j = 0; j < g.jSize; j++) {
+				board.set(i, j, data.get(pos), data.getShort(pos + 1), data.getInt(pos + 3));
+				pos += 7;
+			}
+		}
+		for (int k = 0; k < g.ticks && getCount(game, k) <= count; k++) {
+			board.reinforceAll(getCount(game, k));
+			for (int n = 0; n < getMoveCount(game, k); n++) {
+				if (getOutcome(game, k, n) == ReplayWriter.REJECTED) {
+					continue;
+				}
+				int player = getPlayer(game, k, n);
+				int captured = board.makeMove(getMove(game, k, n), player);
+				if (captured > 0) {
+					board.convert(captured, player);
+				}
+			}
+		}
+		return board;
+	}
+
+	/**
+	 * Unmaps and closes the replay file.
+	 *
+	 * @throws IOException
+	 *             if the file cannot be closed
+	 */
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+
+	/**
+	 * The index of a single game within the replay.
+	 *
+	 * @author Axel Li
+	 */
+	private class Game {
+		public final long seed;
+		public final int iSize;
+		public final int jSize;
+		public final int kingdoms;
+		public final int cells;
+		public int[] tickOffsets;
+		public int ticks;
+
+		/**
+		 * Reads the header of a map record.
+		 *
+		 * @param pos
+		 *            - the position of the map record
+		 */
+		public Game(int pos) {
+			seed = data.getLong(pos + 1);
+			iSize = data.getInt(pos + 13);
+			jSize = data.getInt(pos + 17);
+			kingdoms = data.getInt(pos + 21);
+			cells = pos + 25;
+			tickOffsets = new int[64];
+		}
+
+		/**
+		 * Adds a tick record to the game.
+		 *
+		 * @param pos
+		 *            - the position of the tick record
+		 */
+		public void addTick(int pos) {
+			if (ticks == tickOffsets.length) {
+				tickOffsets = Arrays.copyOf(tickOffsets, ticks * 2);
+			}
+			tickOffsets[ticks++] = pos;
+		}
+
+		/**
+		 * Returns the position of a tick record.
+		 *
+		 * @param k
+		 *            - the index of the tick record
+		 * @return the position in the file
+		 */
+		public int tick(int k) {
+			return tickOffsets[k];
+		}
+	}
+}
@@ -0,0 +1,243 @@
+package system;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * An append-only binary replay of games. Records are encoded on the game
+ * thread into a buffer, and full buffers are written to the file by a
+ * background thread. The hand-off never blocks the game thread: if the disk
+ * falls behind, the buffers wait in memory, which <code>getBacklog</code>
+ * shows.
+ *
+ * The file starts with the magic number and the version. A map record holds
+ * <code>'M'</code>, the seed, the count, the i and j sizes, the number of
+ * kingdoms and the kind, owner and troops of every cell. A tick record holds
+ * <code>'T'</code>, the count, the number of moves and each move in the order
+ * it was applied.
+ *
+ * @author Axel Li
+ */
+public class ReplayWriter implements AutoCloseable {
+	public static final int MAGIC = 0x474E5250;
+	public static final int VERSION = 1;
+	public static final byte MAP = 'M';
+	public static final byte TICK = 'T';
+	public static final byte REJECTED = 0;
+	public static final byte APPLIED = 1;
+	public static final byte FAILED = 2;
+	private static final int CHUNK = 1 << 16;
+	private static final byte[] END = new byte[0];
+	private final BlockingQueue<byte[]> full;
+	private final Thread writer;
+	private final ByteBuffer buffer;
+	private byte[] moves;
+	private int moveCount;
+	private volatile IOException failure;
+
+	/**
+	 * Opens a replay file for writing.
+	 *
+	 * @param file
+	 *            - the name of the file
+	 * @param append
+	 *            - <code>true</code> to add games to the end of an existing file
+	 * @throws IOException
+	 *             if the file cannot be opened
+	 */
+	public ReplayWriter(String file, boolean append) throws IOException {
+		boolean header = !append || new File(file).length() == 0;
+		OutputStream out = new BufferedOutputStream(new FileOutputStream(file, append), CHUNK);
+		full = new LinkedBlockingQueue<>();
+		moves = new byte[CHUNK];
+		buffer = ByteBuffer.allocate(CHUNK);
+		if (header) {
+			buffer.putInt(MAGIC);
+			buffer.putInt(VERSION);
+		}
+		writer = new Thread(() -> drain(out), "replay-writer");
+		writer.setDaemon(true);
+		writer.start();
+	}
+
+	/**
+	 * Records the whole board, which starts a new game in the replay.
+	 *
+	 * @param board
+	 *            - the board
+	 * @param seed
+	 *            - the seed of the game
+	 * @param count
+	 *            - the number of cycles so far
+	 * @param kingdoms
+	 *            - the number of kingdoms
+	 */
+	public void map(BoardEngine board, long seed, int count, int kingdoms) {
+		ensure(25);
+		buffer.put(MAP);
+		buffer.putLong(seed);
+		buffer.putInt(count);
+		buffer.putInt(board.getISize());
+		buffer.putInt(board.getJSize());
+		buffer.putInt(kingdoms);
+		for (int x = 0; x < board.size(); x++) {
+			ensure(7);
+			buffer.put(board.getKind(x));
+			buffer.putShort((short) board.getOwner(x));
+			buffer.putInt(board.getTroops(x));
+		}
+	}
+
+	/**
+	 * Records a move taken from a player's queue during the current cycle.
+	 *
+	 * @param player
+	 *            - the player number
+	 * @param m
+	 *            - the move
+	 * @param outcome
+	 *            - <code>REJECTED</code>, <code>APPLIED</code> or
+	 *            <code>FAILED</code>
+	 */
+	public void move(int player, Move m, byte outcome) {
+		if ((moveCount + 1) * 11 > moves.length) {
+			moves = Arrays.copyOf(moves, moves.length * 2);
+		}
+		int k = moveCount++ * 11;
+		putShort(k, player);
+		putShort(k + 2, m.startI);
+		putShort(k + 4, m.startJ);
+		putShort(k + 6, m.endI);
+		putShort(k + 8, m.endJ);
+		moves[k + 10] = (byte) (outcome << 1 | (m.all ? 1 : 0));
+	}
+
+	/**
+	 * Stores a big-endian short in the move buffer.
+	 *
+	 * @param k
+	 *            - the position in the move buffer
+	 * @param value
+	 *            - the value
+	 */
+	private void putShort(int k, int value) {
+		moves[k] = (byte) (value >> 8);
+		moves[k + 1] = (byte) value;
+	}
+
+	/**
+	 * Records the end of a cycle with every move recorded since the last one.
+	 *
+	 * @param count
+	 *            - the number of the cycle
+	 */
+	public void tick(int count) {
+		ensure(7);
+		buffer.put(TICK);
+		buffer.putInt(count);
+		buffer.putShort((short) moveCount);
+		for (int k = 0; k < moveCount * 11; k += 11) {
+			ensure(11);
+			buffer.put(moves, k, 11);
+		}
+		moveCount = 0;
+	}
+
+	/**
+	 * Hands the buffered records to the background thread.
+	 */
+	public void flush() {
+		if (buffer.position() > 0) {
+			hand(Arrays.copyOf(buffer.array(), buffer.position()));
+			buffer.clear();
+		}
+	}
+
+	/**
+	 * Flushes the replay and waits for the file to be written and closed.
+	 *
+	 * @throws IOException
+	 *             if writing failed
+	 */
+	@Override
+	public void close() throws IOException {
+		flush();
+		hand(END);
+		try {
+			writer.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		if (failure != null) {
+			throw failure;
+		}
+	}
+
+	/**
+	 * Makes room in the buffer, handing it off if it is full.
+	 *
+	 * @param bytes
+	 *            - the number of bytes needed
+	 */
+	private void ensure(int bytes) {
+		if (buffer.remaining() < bytes) {
+			flush();
+		}
+	}
+
+	/**
+	 * Returns the number of buffers waiting to be written.
+	 *
+	 * @return the number of buffers of at most 64 KiB
+	 */
+	public int getBacklog() {
+		return full.size();
+	}
+
+	/**
+	 * Gives a chunk to the background thread without waiting.
+	 *
+	 * @param chunk
+	 *            - the bytes to be written
+	 */
+	private void hand(byte[] chunk) {
+		full.offer(chunk);
+	}
+
+	/**
+	 * Writes chunks to the file until the end is reached.
+	 *
+	 * @param out
+	 *            - the file
+	 */
+	private void drain(OutputStream out) {
+		try {
+			byte[] chunk;
+			while ((chunk = full.take()) != END) {
+				if (failure == null) {
+					try {
+						out.write(chunk);
+					} catch (IOException e) {
+						failure = e;
+					}
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		try {
+			out.close();
+		} catch (IOException e) {
+			if (failure == null) {
+				failure = e;
+			}
+		}
+	}
+}
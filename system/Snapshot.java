@@ -0,0 +1,116 @@
+package system;
+
+/**
+ * A compact copy of the state of a game: the kind, owner and troops of every
+ * cell, the status of the players and the count. The turn order of a cycle is
+ * derived from the seed and the count, so the count is the whole random state
+ * of a running game.
+ *
+ * A bot can look ahead from a snapshot with <code>toEngine</code>, which
+ * returns a board engine with the real rules of <code>makeMove</code> and
+ * <code>reinforceAll</code>. To avoid allocating an engine for every line of
+ * search, the same engine can be reset to the snapshot with
+ * <code>BoardEngine.restore</code>, which only changes the cells that differ.
+ *
+ * @author Axel Li
+ */
+public class Snapshot {
+	private final int iSize;
+	private final int jSize;
+	final byte[] kind;
+	final int[] owner;
+	final int[] troops;
+	final boolean[] dead;
+	int count;
+
+	/**
+	 * Creates an empty snapshot that can be filled again and again.
+	 *
+	 * @param i
+	 *            - the i size of the board
+	 * @param j
+	 *            - the j size of the board
+	 * @param kingdoms
+	 *            - the number of kingdoms
+	 */
+	public Snapshot(int i, int j, int kingdoms) {
+		this.iSize = i;
+		this.jSize = j;
+		kind = new byte[i * j];
+		owner = new int[i * j];
+		troops = new int[i * j];
+		dead = new boolean[kingdoms];
+	}
+
+	/**
+	 * Creates a board engine with the cells of the snapshot, on which moves can
+	 * be simulated without touching the game. The engine has no fog of war.
+	 *
+	 * @return a new board engine
+	 */
+	public BoardEngine toEngine() {
+		BoardEngine engine = new BoardEngine(iSize, jSize, dead.length);
+		engine.restore(this);
+		return engine;
+	}
+
+	public int getISize() {
+		return iSize;
+	}
+
+	public int getJSize() {
+		return jSize;
+	}
+
+	/**
+	 * Returns the kind of a cell when the snapshot was taken.
+	 *
+	 * @param x
+	 *            - the index of the cell, <code>i * jSize + j</code>
+	 * @return <code>LAND</code>, <code>MOUNTAIN</code>, <code>CITY</code> or
+	 *         <code>KING</code>
+	 */
+	public byte getKind(int x) {
+		return kind[x];
+	}
+
+	/**
+	 * Returns the owner of a cell when the snapshot was taken.
+	 *
+	 * @param x
+	 *            - the index of the cell, <code>i * jSize + j</code>
+	 * @return the player number, 0 if neutral
+	 */
+	public int getOwner(int x) {
+		return owner[x];
+	}
+
+	/**
+	 * Returns the troops on a cell when the snapshot was taken.
+	 *
+	 * @param x
+	 *            - the index of the cell, <code>i * jSize + j</code>
+	 * @return the number of troops
+	 */
+	public int getTroops(int x) {
+		return troops[x];
+	}
+
+	/**
+	 * Returns the count when the snapshot was taken.
+	 *
+	 * @return the number of cycles
+	 */
+	public int getCount() {
+		return count;
+	}
+
+	/**
+	 * Returns the status of the players when the snapshot was taken.
+	 *
+	 * @return <code>false</code> if the player is alive, <code>true</code> if dead
+	 */
+	public boolean[] getStatus() {
+		return dead.clone();
+	}
+}
@@ -2,7 +2,10 @@ package system;
 
 public interface Spectator {
 	/**
-	 * Updates the viewer about the game state.
+	 * Updates the viewer about the game state. The board is a copy made for
+	 * this viewer and the army state is made new each cycle, so both can be
+	 * kept after the call; the game never changes them afterwards. The army
+	 * state is shared by every viewer of the cycle and must not be changed.
 	 * 
 	 * @param board
 	 *            - the current board
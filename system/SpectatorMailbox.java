@@ -0,0 +1,246 @@
+package system;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A mailbox that decouples a spectator from the game thread. Updates only
+ * merge the changed cells into the latest frame and return; the spectator is
+ * updated later by an executor with everything that changed since its last
+ * frame. Frames that arrive while the spectator is busy are coalesced, so a
+ * slow spectator skips frames instead of slowing down the game.
+ *
+ * At most one update of the spectator is scheduled at a time, so a Swing
+ * spectator can be given <code>SwingUtilities::invokeLater</code> as the
+ * executor without flooding the event queue.
+ *
+ * @author Axel Li
+ */
+public class SpectatorMailbox implements DeltaSpectator {
+	private static final ExecutorService shared = sharedPool();
+	private final Spectator target;
+	private final Executor executor;
+	private int jSize;
+	private long[] latest;
+	private boolean[] dirty;
+	private int[] dirtyCells;
+	private int dirtyCount;
+	private int[][] army;
+	private boolean keyframe;
+	private boolean pending;
+	private boolean scheduled;
+	private ViewDelta out;
+	private Viewed[][] matrix;
+	private long frames;
+	private long delivered;
+
+	/**
+	 * Creates a mailbox whose spectator is updated on a shared background
+	 * thread.
+	 *
+	 * @param target
+	 *            - the spectator
+	 */
+	public SpectatorMailbox(Spectator target) {
+		this(target, shared);
+	}
+
+	/**
+	 * Creates a mailbox whose spectator is updated by an executor.
+	 *
+	 * @param target
+	 *            - the spectator
+	 * @param executor
+	 *            - runs the updates of the spectator
+	 */
+	public SpectatorMailbox(Spectator target, Executor executor) {
+		this.target = target;
+		this.executor = executor;
+	}
+
+	@Override
+	public synchronized void update(ViewDelta delta, int[][] armyState) {
+		if (latest == null) {
+			allocate(delta.getISize(), delta.getJSize(), armyState.length);
+		}
+		keyframe |= delta.isKeyframe();
+		for (int k = 0; k < delta.size(); k++) {
+			int x = delta.getI(k) * jSize + delta.getJ(k);
+			latest[x] = delta.getPacked(k);
+			mark(x);
+		}
+		post(armyState);
+	}
+
+	@Override
+	public synchronized void update(Viewed[][] board, int[][] armyState) {
+		if (latest == null) {
+			allocate(board.length, board[0].length, armyState.length);
+			keyframe = true;
+		}
+		for (int x = 0; x < latest.length; x++) {
+			long v = PackedView.pack(board[x / jSize][x % jSize]);
+			if (v != latest[x]) {
+				latest[x] = v;
+				mark(x);
+			}
+		}
+		post(armyState);
+	}
+
+	@Override
+	public boolean wantsKeyframe() {
+		return false;
+	}
+
+	/**
+	 * Returns the number of frames received from the game.
+	 *
+	 * @return the number of frames
+	 */
+	public synchronized long getFrames() {
+		return frames;
+	}
+
+	/**
+	 * Returns the number of frames that were merged into a later one instead of
+	 * being delivered.
+	 *
+	 * @return the number of coalesced frames
+	 */
+	public synchronized long getDropped() {
+		return frames - delivered - (pending ? 1 : 0);
+	}
+
+	/**
+	 * Allocates the latest frame once the size of the board is known.
+	 *
+	 * @param i
+	 *            - the i size of the board
+	 * @param j
+	 *            - the j size of the board
+	 * @param kingdoms
+	 *            - the number of kingdoms
+	 */
+	private void allocate(int i, int j, int kingdoms) {
+		jSize = j;
+		latest = new long[i * j];
+		dirty = new boolean[i * j];
+		dirtyCells = new int[i * j];
+		army = new int[kingdoms][2];
+		out = new ViewDelta(i, j);
+	}
+
+	/**
+	 * Marks a cell as changed since the last delivered frame.
+	 *
+	 * @param x
+	 *            - the index of the cell
+	 */
+	private void mark(int x) {
+		if (!dirty[x]) {
+			dirty[x] = true;
+			dirtyCells[dirtyCount++] = x;
+		}
+	}
+
+	/**
+	 * Stores the army state of the frame and schedules a delivery if none is
+	 * scheduled.
+	 *
+	 * @param armyState
+	 *            - the state of each player's army and land
+	 */
+	private void post(int[][] armyState) {
+		for (int k = 0; k < army.length; k++) {
+			army[k][0] = armyState[k][0];
+			army[k][1] = armyState[k][1];
+		}
+		frames++;
+		pending = true;
+		if (!scheduled) {
+			scheduled = true;
+			executor.execute(this::deliver);
+		}
+	}
+
+	/**
+	 * Updates the spectator with everything that changed since its last frame,
+	 * and schedules itself again if more frames arrived in the meantime. Each
+	 * delivery gets its own army state and board, which the spectator may keep.
+	 */
+	private void deliver() {
+		int[][] outArmy = new int[army.length][];
+		boolean full = target instanceof DeltaSpectator && ((DeltaSpectator) target).wantsKeyframe();
+		synchronized (this) {
+			full |= keyframe || matrix == null && !(target instanceof DeltaSpectator);
+			out.clear(full);
+			if (full) {
+				for (int x = 0; x < latest.length; x++) {
+					out.add(x, latest[x]);
+				}
+			} else {
+				for (int k = 0; k < dirtyCount; k++) {
+					out.add(dirtyCells[k], latest[dirtyCells[k]]);
+				}
+			}
+			for (int k = 0; k < dirtyCount; k++) {
+				dirty[dirtyCells[k]] = false;
+			}
+			dirtyCount = 0;
+			keyframe = false;
+			pending = false;
+			delivered++;
+			for (int k = 0; k < army.length; k++) {
+				outArmy[k] = army[k].clone();
+			}
+		}
+		try {
+			if (target instanceof DeltaSpectator) {
+				((DeltaSpectator) target).update(out, outArmy);
+			} else {
+				if (matrix == null) {
+					matrix = new Viewed[latest.length / jSize][jSize];
+				}
+				for (int k = 0; k < out.size(); k++) {
+					matrix[out.getI(k)][out.getJ(k)] = out.get(k);
+				}
+				Viewed[][] board = new Viewed[matrix.length][];
+				for (int i = 0; i < matrix.length; i++) {
+					board[i] = matrix[i].clone();
+				}
+				target.update(board, outArmy);
+			}
+		} finally {
+			synchronized (this) {
+				if (pending) {
+					executor.execute(this::deliver);
+				} else {
+					scheduled = false;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Creates the shared pool of daemon threads for mailboxes without their own
+	 * executor. Idle threads end after a minute.
+	 *
+	 * @return the pool
+	 */
+	private static ExecutorService sharedPool() {
+		AtomicInteger ids = new AtomicInteger();
+		ThreadPoolExecutor pool = new ThreadPoolExecutor(2, 2, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+				r -> {
+					Thread t = new Thread(r, "spectator-" + ids.incrementAndGet());
+					t.setDaemon(true);
+					return t;
+				});
+		pool.allowCoreThreadTimeOut(true);
+		return pool;
+	}
+}
@@ -0,0 +1,44 @@
+package system;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * A flight recorder event for one cycle of a game, with the time spent in each
+ * phase of the cycle.
+ *
+ * @author Axel Li
+ */
+@Name("generals.Tick")
+@Label("Tick")
+@Category("Generals")
+@Description("One cycle of a game board")
+public class TickEvent extends jdk.jfr.Event {
+	@Label("Count")
+	public int count;
+
+	@Label("Reinforce")
+	@Timespan
+	public long reinforce;
+
+	@Label("Step")
+	@Timespan
+	public long step;
+
+	@Label("Army State")
+	@Timespan
+	public long armyState;
+
+	@Label("View Building")
+	@Description("Time spent building views, summed over every view")
+	@Timespan
+	public long views;
+
+	@Label("Player Updates")
+	@Description("Time from the first view being built until every player and spectator was updated")
+	@Timespan
+	public long players;
+}
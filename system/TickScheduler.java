@@ -0,0 +1,171 @@
+package system;
+
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BooleanSupplier;
+
+/**
+ * A fixed-rate tick scheduler. Ticks are due on a fixed grid measured with
+ * <code>System.nanoTime()</code>, so the time spent in a tick and sleep jitter
+ * do not push later ticks back. How ticks that run late are handled is set by
+ * the overrun policy.
+ *
+ * @author Axel Li
+ */
+public class TickScheduler {
+	/**
+	 * What to do when ticks fall behind the schedule.
+	 */
+	public enum Overrun {
+		/**
+		 * Late ticks run back to back until the schedule is met again, but never
+		 * more than the catch up limit behind; older due ticks are dropped.
+		 */
+		CATCH_UP,
+		/**
+		 * Missed ticks are dropped and the next tick runs at the next point of
+		 * the original grid.
+		 */
+		SKIP
+	}
+
+	private static final long SPIN = 100_000;
+	private final long period;
+	private final Overrun policy;
+	private final int maxCatchUp;
+	private final Histogram lateness;
+	private final Histogram duration;
+	private volatile long skipped;
+
+	/**
+	 * Creates a tick scheduler.
+	 *
+	 * @param period
+	 *            - the time between ticks in nanoseconds
+	 * @param policy
+	 *            - what to do when ticks fall behind
+	 * @param maxCatchUp
+	 *            - with <code>CATCH_UP</code>, the most ticks already due when
+	 *            a tick ends that are then run back to back; the older due
+	 *            ticks are dropped, so 0 behaves like <code>SKIP</code>
+	 */
+	public TickScheduler(long period, Overrun policy, int maxCatchUp) {
+		if (period <= 0 || maxCatchUp < 0) {
+			throw new IllegalArgumentException("Period must be positive and the catch up limit not negative");
+		}
+		this.period = period;
+		this.policy = policy;
+		this.maxCatchUp = maxCatchUp;
+		lateness = new Histogram();
+		duration = new Histogram();
+	}
+
+	/**
+	 * Runs ticks on the schedule until the game is done.
+	 *
+	 * @param tick
+	 *            - the work of a tick
+	 * @param done
+	 *            - <code>true</code> once no more ticks should run
+	 * @throws InterruptedException
+	 *             if the thread is interrupted while waiting
+	 */
+	public void run(Runnable tick, BooleanSupplier done) throws InterruptedException {
+		long due = System.nanoTime() + period;
+		while (!done.getAsBoolean()) {
+			waitUntil(due);
+			long start = System.nanoTime();
+			tick.run();
+			long end = System.nanoTime();
+			due = next(due, start, end);
+		}
+	}
+
+	/**
+	 * Records a tick and finds when the next one is due.
+	 *
+	 * @param due
+	 *            - when the tick was due
+	 * @param start
+	 *            - when the tick started
+	 * @param end
+	 *            - when the tick ended
+	 * @return when the next tick is due
+	 */
+	long next(long due, long start, long end) {
+		lateness.record(start - due);
+		duration.record(end - start);
+		due += period;
+		if (end > due) {
+			long missed = (end - due) / period + 1;
+			if (policy == Overrun.CATCH_UP) {
+				missed = Math.max(missed - maxCatchUp, 0);
+			}
+			skipped += missed;
+			due += missed * period;
+		}
+		return due;
+	}
+
+	/**
+	 * Returns the time between ticks.
+	 *
+	 * @return the period in nanoseconds
+	 */
+	public long getPeriod() {
+		return period;
+	}
+
+	/**
+	 * Parks until a deadline and spins for the last moments for precision.
+	 *
+	 * @param deadline
+	 *            - the time to wait for
+	 * @throws InterruptedException
+	 *             if the thread is interrupted while waiting
+	 */
+	private void waitUntil(long deadline) throws InterruptedException {
+		long remaining;
+		while ((remaining = deadline - System.nanoTime()) > 0) {
+			if (Thread.interrupted()) {
+				throw new InterruptedException();
+			}
+			if (remaining > SPIN) {
+				LockSupport.parkNanos(remaining - SPIN);
+			} else {
+				Thread.onSpinWait();
+			}
+		}
+	}
+
+	/**
+	 * Returns how late each tick started compared to when it was due.
+	 *
+	 * @return the lateness histogram in nanoseconds
+	 */
+	public Histogram getLateness() {
+		return lateness;
+	}
+
+	/**
+	 * Returns how long each tick took.
+	 *
+	 * @return the duration histogram in nanoseconds
+	 */
+	public Histogram getDuration() {
+		return duration;
+	}
+
+	/**
+	 * Returns the number of due ticks that were dropped after overruns.
+	 *
+	 * @return the number of dropped ticks
+	 */
+	public long getSkipped() {
+		return skipped;
+	}
+
+	@Override
+	public String toString() {
+		return "lateness " + lateness + ", cycle " + duration + ", skipped " + skipped;
+	}
+}
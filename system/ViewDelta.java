@@ -0,0 +1,176 @@
+package system;
+
+import java.util.Arrays;
+
+/**
+ * The cells of a view that changed since the last frame. A keyframe contains
+ * every cell of the view. The same object is reused every cycle, so it should
+ * not be kept after the update that received it returns. Views are kept packed
+ * as in <code>PackedView</code>, and only <code>get</code> allocates. The
+ * delta grows with the number of changed cells, so on a large board it stays
+ * small unless a keyframe is sent, and shrinks again after one.
+ *
+ * @author Axel Li
+ */
+public class ViewDelta {
+	private static final int MIN = 64;
+	private static final int SHRINK = 1 << 16;
+	private final int iSize;
+	private final int jSize;
+	private int[] cells;
+	private long[] views;
+	private int size;
+	private boolean keyframe;
+
+	/**
+	 * Creates an empty delta for a board.
+	 *
+	 * @param i
+	 *            - the i size of the board
+	 * @param j
+	 *            - the j size of the board
+	 */
+	public ViewDelta(int i, int j) {
+		this.iSize = i;
+		this.jSize = j;
+		cells = new int[Math.min(i * j, MIN)];
+		views = new long[cells.length];
+	}
+
+	/**
+	 * Removes every cell from the delta.
+	 *
+	 * @param keyframe
+	 *            - <code>true</code> if the next frame is a keyframe
+	 */
+	void clear(boolean keyframe) {
+		if (this.keyframe && !keyframe && cells.length > SHRINK) {
+			cells = new int[MIN];
+			views = new long[MIN];
+		}
+		this.keyframe = keyframe;
+		size = 0;
+	}
+
+	/**
+	 * Adds a changed cell to the delta.
+	 *
+	 * @param x
+	 *            - the index of the cell
+	 * @param v
+	 *            - the new packed view of the cell
+	 */
+	void add(int x, long v) {
+		if (size == cells.length) {
+			int length = Math.min(size * 2, iSize * jSize);
+			cells = Arrays.copyOf(cells, length);
+			views = Arrays.copyOf(views, length);
+		}
+		cells[size] = x;
+		views[size++] = v;
+	}
+
+	/**
+	 * Returns the i size of the board.
+	 *
+	 * @return the i size
+	 */
+	int getISize() {
+		return iSize;
+	}
+
+	/**
+	 * Returns the j size of the board.
+	 *
+	 * @return the j size
+	 */
+	int getJSize() {
+		return jSize;
+	}
+
+	/**
+	 * Returns whether the delta contains every cell of the view.
+	 *
+	 * @return <code>true</code> if the delta is a keyframe
+	 */
+	public boolean isKeyframe() {
+		return keyframe;
+	}
+
+	/**
+	 * Returns the number of changed cells.
+	 *
+	 * @return the number of cells in the delta
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Returns the i position of a changed cell.
+	 *
+	 * @param k
+	 *            - the position in the delta
+	 * @return the i position
+	 */
+	public int getI(int k) {
+		return cells[k] / jSize;
+	}
+
+	/**
+	 * Returns the j position of a changed cell.
+	 *
+	 * @param k
+	 *            - the position in the delta
+	 * @return the j position
+	 */
+	public int getJ(int k) {
+		return cells[k] % jSize;
+	}
+
+	/**
+	 * Returns the new view of a changed cell as a new object.
+	 *
+	 * @param k
+	 *            - the position in the delta
+	 * @return a new <code>Viewed</code> object of the cell
+	 */
+	public Viewed get(int k) {
+		return PackedView.toViewed(views[k]);
+	}
+
+	/**
+	 * Returns the new packed view of a changed cell.
+	 *
+	 * @param k
+	 *            - the position in the delta
+	 * @return the packed view of the cell
+	 */
+	public long getPacked(int k) {
+		return views[k];
+	}
+
+	public boolean isKnown(int k) {
+		return PackedView.isKnown(views[k]);
+	}
+
+	public boolean isMountain(int k) {
+		return PackedView.isMountain(views[k]);
+	}
+
+	public int getType(int k) {
+		return PackedView.getType(views[k]);
+	}
+
+	public int getTroops(int k) {
+		return PackedView.getTroops(views[k]);
+	}
+
+	public boolean isCity(int k) {
+		return PackedView.isCity(views[k]);
+	}
+
+	public boolean isKing(int k) {
+		return PackedView.isKing(views[k]);
+	}
+}
@@ -0,0 +1,213 @@
+package system;
+
+import java.util.Arrays;
+
+/**
+ * The fog of war for each player. Every cell keeps a count of the cells owned
+ * by each player within its 3x3 neighbourhood, which only changes when a cell
+ * changes owner.
+ *
+ * The counts are kept in tiles of 32x32 cells, one byte per cell, and a
+ * player's tile is only allocated once the player sees a cell in it. A player
+ * therefore costs memory for the part of the board around its land, not for
+ * the whole board, which keeps large boards with many players small.
+ *
+ * @author Axel Li
+ */
+public class Vision {
+	private static final int TILE_BITS = 5;
+	private static final int MASK = (1 << TILE_BITS) - 1;
+	private static final int COUNT = 0x7F;
+	private static final int FLAGGED = 0x80;
+	private final int iSize;
+	private final int jSize;
+	private final int tilesJ;
+	private final byte[][][] tiles;
+	private final int[][] flipped;
+	private final int[] flips;
+	private int allocated;
+
+	/**
+	 * Creates the fog of war for a board with no owned cells.
+	 *
+	 * @param i
+	 *            - the i size of the board
+	 * @param j
+	 *            - the j size of the board
+	 * @param kingdoms
+	 *            - the number of kingdoms
+	 */
+	public Vision(int i, int j, int kingdoms) {
+		this.iSize = i;
+		this.jSize = j;
+		tilesJ = (j + MASK) >> TILE_BITS;
+		tiles = new byte[kingdoms][((i + MASK) >> TILE_BITS) * tilesJ][];
+		flipped = new int[kingdoms][16];
+		flips = new int[kingdoms];
+	}
+
+	/**
+	 * Updates the vision counts around a cell that changed owner.
+	 *
+	 * @param x
+	 *            - the index of the cell
+	 * @param before
+	 *            - the previous owner, 0 if neutral
+	 * @param after
+	 *            - the new owner, 0 if neutral
+	 */
+	public void ownerChanged(int x, int before, int after) {
+		if (before == after) {
+			return;
+		}
+		int i = x / jSize;
+		int j = x % jSize;
+		for (int iShift = Math.max(i - 1, 0); iShift <= Math.min(i + 1, iSize - 1); iShift++) {
+			for (int jShift = Math.max(j - 1, 0); jShift <= Math.min(j + 1, jSize - 1); jShift++) {
+				if (before != 0) {
+					byte[] tile = tiles[before - 1][tile(iShift, jShift)];
+					int k = offset(iShift, jShift);
+					if ((--tile[k] & COUNT) == 0) {
+						flip(before - 1, tile, k, iShift * jSize + jShift);
+					}
+				}
+				if (after != 0) {
+					byte[] tile = allocate(after - 1, tile(iShift, jShift));
+					int k = offset(iShift, jShift);
+					if ((++tile[k] & COUNT) == 1) {
+						flip(after - 1, tile, k, iShift * jSize + jShift);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns a tile of a player, allocating it if needed.
+	 *
+	 * @param p
+	 *            - the index of the player
+	 * @param t
+	 *            - the index of the tile
+	 * @return the counts of the tile
+	 */
+	private byte[] allocate(int p, int t) {
+		if (tiles[p][t] == null) {
+			tiles[p][t] = new byte[1 << (2 * TILE_BITS)];
+			allocated++;
+		}
+		return tiles[p][t];
+	}
+
+	/**
+	 * Returns the index of the tile of a cell.
+	 *
+	 * @param i
+	 *            - the i position of the cell
+	 * @param j
+	 *            - the j position of the cell
+	 * @return the index of the tile
+	 */
+	private int tile(int i, int j) {
+		return (i >> TILE_BITS) * tilesJ + (j >> TILE_BITS);
+	}
+
+	/**
+	 * Returns the index of a cell within its tile.
+	 *
+	 * @param i
+	 *            - the i position of the cell
+	 * @param j
+	 *            - the j position of the cell
+	 * @return the index within the tile
+	 */
+	private static int offset(int i, int j) {
+		return (i & MASK) << TILE_BITS | (j & MASK);
+	}
+
+	/**
+	 * Records a cell whose visibility changed for a player.
+	 *
+	 * @param p
+	 *            - the index of the player
+	 * @param tile
+	 *            - the tile of the cell
+	 * @param k
+	 *            - the index of the cell within the tile
+	 * @param x
+	 *            - the index of the cell
+	 */
+	private void flip(int p, byte[] tile, int k, int x) {
+		if ((tile[k] & FLAGGED) == 0) {
+			tile[k] |= FLAGGED;
+			if (flips[p] == flipped[p].length) {
+				flipped[p] = Arrays.copyOf(flipped[p], flips[p] * 2);
+			}
+			flipped[p][flips[p]++] = x;
+		}
+	}
+
+	/**
+	 * Checks whether a player can see a cell.
+	 *
+	 * @param p
+	 *            - the player number
+	 * @param x
+	 *            - the index of the cell
+	 * @return <code>true</code> if the cell is visible
+	 */
+	public boolean isVisible(int p, int x) {
+		int i = x / jSize;
+		int j = x - i * jSize;
+		byte[] tile = tiles[p - 1][tile(i, j)];
+		return tile != null && (tile[offset(i, j)] & COUNT) != 0;
+	}
+
+	/**
+	 * Returns the cells whose visibility changed for a player since the last
+	 * call to <code>clearFlips</code>.
+	 *
+	 * @param p
+	 *            - the player number
+	 * @return an array whose first <code>getFlips(p)</code> entries are cell
+	 *         indexes
+	 */
+	public int[] getFlipped(int p) {
+		return flipped[p - 1];
+	}
+
+	/**
+	 * Returns the number of cells whose visibility changed for a player.
+	 *
+	 * @param p
+	 *            - the player number
+	 * @return the number of changed cells
+	 */
+	public int getFlips(int p) {
+		return flips[p - 1];
+	}
+
+	/**
+	 * Returns the number of tiles allocated over all players.
+	 *
+	 * @return the number of tiles of 32x32 cells
+	 */
+	public int getTiles() {
+		return allocated;
+	}
+
+	/**
+	 * Forgets the changed cells of every player.
+	 */
+	public void clearFlips() {
+		for (int p = 0; p < flips.length; p++) {
+			for (int k = 0; k < flips[p]; k++) {
+				int x = flipped[p][k];
+				int i = x / jSize;
+				int j = x - i * jSize;
+				tiles[p][tile(i, j)][offset(i, j)] &= COUNT;
+			}
+			flips[p] = 0;
+		}
+	}
+}